@@ -38,6 +38,8 @@ public class SecurityConfig {
 
                         .requestMatchers(HttpMethod.GET, "/api/categories/**", "/api/products/**")
                         .hasAnyRole("ADMIN", "USER")
+                        // POST /batch chỉ là đọc nhiều sản phẩm (danh sách id dài)
+                        .requestMatchers(HttpMethod.POST, "/api/products/batch").hasAnyRole("ADMIN", "USER")
                         .requestMatchers(HttpMethod.POST, "/api/categories/**", "/api/products/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.PUT,  "/api/categories/**", "/api/products/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.DELETE,"/api/categories/**", "/api/products/**").hasRole("ADMIN")
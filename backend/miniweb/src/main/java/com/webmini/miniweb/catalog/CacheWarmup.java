@@ -0,0 +1,137 @@
+package com.webmini.miniweb.catalog;
+
+import com.webmini.miniweb.catalog.category.dto.CategoryDtos;
+import com.webmini.miniweb.catalog.category.mapper.CategoryMapper;
+import com.webmini.miniweb.catalog.category.repo.CategoryRepository;
+import com.webmini.miniweb.catalog.product.dto.ProductDtos;
+import com.webmini.miniweb.catalog.product.repo.ProductRepository;
+import com.webmini.miniweb.common.BatchCacheLoader;
+import com.webmini.miniweb.common.CacheAccessTracker;
+import com.webmini.miniweb.common.CacheCircuitBreaker;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Nạp trước cache khi khởi động để node mới sau deploy không dồn hết request xuống MySQL:
+ * toàn bộ danh mục và top-N sản phẩm được truy cập nhiều nhất ở các lần chạy trước (CacheAccessTracker).
+ * Sản phẩm được nạp theo chunk (một câu IN + một MGET + một pipeline SET mỗi chunk) trên pool giới hạn.
+ * <p>
+ * Chạy đồng bộ trong ApplicationReadyEvent, mà Spring Boot chỉ chuyển readiness sang ACCEPTING_TRAFFIC
+ * sau khi các listener này xong, nên /actuator/health/readiness chỉ UP khi warm-up kết thúc
+ * (hoặc quá cache.warmup.timeout).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheWarmup {
+
+    private final CategoryRepository categories;
+    private final CategoryMapper categoryMapper;
+    private final ProductRepository products;
+    private final BatchCacheLoader batchCache;
+    private final CacheAccessTracker accessTracker;
+    private final CacheCircuitBreaker breaker;
+
+    @Value("${cache.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.warmup.top-products:5000}")
+    private int topProducts;
+
+    @Value("${cache.warmup.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${cache.warmup.parallelism:4}")
+    private int parallelism;
+
+    @Value("${cache.warmup.timeout:PT60S}")
+    private Duration timeout;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled || breaker.isOpen()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            int categoryCount = warmCategories();
+            int productCount = warmProducts(start + timeout.toMillis());
+            log.info("✅ Warm-up cache xong: {} danh mục, {} sản phẩm trong {} ms",
+                    categoryCount, productCount, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            // Cache lạnh chỉ chậm hơn, không phải lý do để node không nhận request
+            log.warn("⚠️ Warm-up cache thất bại: {}", e.getMessage());
+        }
+    }
+
+    private int warmCategories() {
+        Map<Long, CategoryDtos.CategoryResponse> all = categories.findAll().stream()
+                .map(categoryMapper::toDto)
+                .collect(Collectors.toMap(CategoryDtos.CategoryResponse::id, Function.identity()));
+        // Danh mục đã có sẵn trong cache thì MGET thấy và bỏ qua, còn lại ghi một pipeline
+        return batchCache.preload("categories", all.keySet(), CategoryDtos.CategoryResponse.class,
+                missing -> missing.stream().collect(Collectors.toMap(Function.identity(), all::get))).size();
+    }
+
+    private int warmProducts(long deadline) {
+        List<Long> ids = new ArrayList<>();
+        for (String key : accessTracker.top("products", topProducts)) {
+            try {
+                ids.add(Long.valueOf(key));
+            } catch (NumberFormatException ignored) {
+                // Key lạ trong thống kê, bỏ qua
+            }
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        AtomicInteger loaded = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread t = new Thread(r, "cache-warmup");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int from = 0; from < ids.size(); from += chunkSize) {
+                List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+                tasks.add(pool.submit(() -> loaded.addAndGet(batchCache.preload("products", chunk,
+                        ProductDtos.ProductResponse.class,
+                        missing -> products.findResponsesByIds(missing).stream()
+                                .collect(Collectors.toMap(ProductDtos.ProductResponse::id, Function.identity())))
+                        .size())));
+            }
+            for (Future<?> task : tasks) {
+                task.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
+        } catch (TimeoutException e) {
+            log.warn("⚠️ Warm-up sản phẩm quá {}, dừng ở {} sản phẩm", timeout, loaded.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("⚠️ Lỗi khi warm-up sản phẩm: {}", e.getCause().getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+        return loaded.get();
+    }
+}
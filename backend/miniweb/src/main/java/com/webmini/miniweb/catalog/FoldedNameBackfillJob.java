@@ -0,0 +1,71 @@
+package com.webmini.miniweb.catalog;
+
+import com.webmini.miniweb.common.TextNormalizer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Điền cột name_folded (V7) cho các dòng cũ, mỗi chunk một transaction ngắn
+ * để không khóa bảng lâu. Chạy lại được: chỉ xử lý các dòng name_folded IS NULL.
+ */
+@Slf4j
+@Component
+public class FoldedNameBackfillJob {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final TransactionTemplate tx;
+
+    public FoldedNameBackfillJob(PlatformTransactionManager transactionManager) {
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        int products = backfill("products");
+        int categories = backfill("categories");
+        if (products + categories > 0) {
+            log.info("✅ Đã điền name_folded: {} sản phẩm, {} danh mục", products, categories);
+        }
+    }
+
+    private int backfill(String table) {
+        int total = 0;
+        long lastId = 0;
+        while (true) {
+            long afterId = lastId;
+            List<Object[]> rows = tx.execute(status -> {
+                @SuppressWarnings("unchecked")
+                List<Object[]> chunk = em.createNativeQuery(
+                        "SELECT id, name FROM " + table + " WHERE name_folded IS NULL AND id > ? ORDER BY id LIMIT ?")
+                    .setParameter(1, afterId)
+                    .setParameter(2, CHUNK_SIZE)
+                    .getResultList();
+                for (Object[] row : chunk) {
+                    // Giữ nguyên updated_at: chỉ thêm cột dẫn xuất, dữ liệu (và cache đánh phiên bản) không đổi
+                    em.createNativeQuery("UPDATE " + table + " SET name_folded = ?, updated_at = updated_at WHERE id = ?")
+                        .setParameter(1, TextNormalizer.fold((String) row[1]))
+                        .setParameter(2, row[0])
+                        .executeUpdate();
+                }
+                return chunk;
+            });
+            if (rows == null || rows.isEmpty()) {
+                return total;
+            }
+            total += rows.size();
+            lastId = ((Number) rows.get(rows.size() - 1)[0]).longValue();
+        }
+    }
+}
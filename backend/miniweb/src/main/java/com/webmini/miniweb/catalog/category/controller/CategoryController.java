@@ -40,12 +40,31 @@ public class CategoryController {
             @RequestParam(required = false) String status,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(required = false) String sort
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "exact") String count
     ) {
         Pageable pageable = toPageable(page, size, sort, "createdAt,desc");
+        if ("cached".equalsIgnoreCase(count)) {
+            return serviceCategory.searchCachedCount(q, status, pageable);
+        }
         return serviceCategory.search(q, status, pageable);
     }
 
+    /**
+     * count=none: trả về Slice (chỉ có hasNext), bỏ qua truy vấn COUNT(*).
+     */
+    @GetMapping(params = "count=none")
+    public Slice<CategoryDtos.CategoryResponse> searchSlice(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String sort
+    ) {
+        Pageable pageable = toPageable(page, size, sort, "createdAt,desc");
+        return serviceCategory.searchSlice(q, status, pageable);
+    }
+
     private Pageable toPageable(int page, int size, String sort, String fallback) {
         String s = (sort == null || sort.isBlank()) ? fallback : sort;
         String[] parts = s.split(",");
@@ -0,0 +1,202 @@
+package com.webmini.miniweb.catalog.category.repo;
+
+import com.webmini.miniweb.catalog.category.entity.Category;
+import com.webmini.miniweb.common.TwoLevelCacheManager;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bản sao trong bộ nhớ của bảng categories (nhỏ, ít thay đổi) để đường đọc sản phẩm
+ * tra tên danh mục theo category_id thay vì JOIN. Mỗi lần thay đổi tạo một snapshot mới
+ * (copy-on-write) với version tăng dần; các Category trả về dùng chung nên chỉ được đọc.
+ * Được cập nhật từ các thao tác ghi danh mục, từ event danh mục, từ message của node khác trên kênh hủy L1
+ * (xem TwoLevelCacheManager#broadcastEvict), và nạp lại toàn bộ khi snapshot cũ hơn
+ * catalog.category.dictionary.max-age-ms (phòng khi lỡ message).
+ * Nằm ở tầng repo để repository sản phẩm dùng được mà không phụ thuộc ngược lên tầng service.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CategoryDictionary {
+
+    /** Tên dùng trên kênh hủy L1 của TwoLevelCacheManager. */
+    static final String CHANNEL_NAME = "category-dictionary";
+
+    private final CategoryRepository repo;
+    private final TwoLevelCacheManager cacheManager;
+
+    @Value("${catalog.category.dictionary.max-age-ms:60000}")
+    private long maxAgeMs;
+
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+
+    private record Snapshot(long version, long loadedAt, Map<Long, Category> byId) {}
+
+    @PostConstruct
+    void subscribe() {
+        cacheManager.onRemoteEvict(CHANNEL_NAME, ids -> ids.forEach(id -> {
+            try {
+                refresh(Long.valueOf(id));
+            } catch (RuntimeException e) {
+                // Snapshot sẽ được nạp lại khi quá max-age
+                log.warn("⚠️ Không nạp lại được danh mục {} theo message từ node khác: {}", id, e.getMessage());
+            }
+        }));
+    }
+
+    /** Danh mục theo id (bản chỉ đọc), hoặc null nếu không tồn tại. */
+    public Category get(Long id) {
+        if (id == null) {
+            return null;
+        }
+        Category category = current().byId().get(id);
+        if (category == null) {
+            // Có thể vừa được tạo ở node khác: tra DB một lần rồi bổ sung vào snapshot
+            category = repo.findById(id).map(this::put).orElse(null);
+        }
+        return category;
+    }
+
+    public String name(Long id) {
+        Category category = get(id);
+        return category != null ? category.getName() : null;
+    }
+
+    /**
+     * Toàn bộ danh mục hiện có theo id (map chỉ đọc, không sao chép). Dùng khi cần tra nhiều lần trong một
+     * truy vấn; id không có trong map thì tra lại bằng {@link #get(Long)}.
+     */
+    public Map<Long, Category> snapshot() {
+        return Collections.unmodifiableMap(current().byId());
+    }
+
+    /** Tăng mỗi khi nội dung từ điển thay đổi. */
+    public long version() {
+        return current().version();
+    }
+
+    /**
+     * Gọi sau khi tạo/sửa danh mục; nếu đang trong transaction thì chỉ áp dụng khi commit.
+     * Các node khác được báo nạp lại ngay khi commit: phải gọi trước khi đăng ký xóa các entry cache
+     * nhúng tên danh mục, nếu không node khác có thể dựng lại entry đó bằng tên cũ còn trong từ điển của nó.
+     */
+    public void onSaved(Category category) {
+        Category copy = copyOf(category);
+        afterCommit(() -> {
+            put(copy);
+            cacheManager.broadcastEvict(CHANNEL_NAME, String.valueOf(copy.getId()));
+        });
+    }
+
+    public void onDeleted(Long id) {
+        afterCommit(() -> {
+            remove(id);
+            cacheManager.broadcastEvict(CHANNEL_NAME, String.valueOf(id));
+        });
+    }
+
+    /** Nạp lại một danh mục từ DB (dùng khi nhận event/message từ node khác). */
+    public void refresh(Long id) {
+        repo.findById(id).ifPresentOrElse(this::put, () -> remove(id));
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            reloadLock.lock();
+            try {
+                if (snapshot == null) {
+                    snapshot = load(0);
+                }
+                return snapshot;
+            } finally {
+                reloadLock.unlock();
+            }
+        }
+        // Hết hạn thì một luồng nạp lại, các luồng khác vẫn dùng snapshot cũ
+        if (System.currentTimeMillis() - s.loadedAt() > maxAgeMs && reloadLock.tryLock()) {
+            try {
+                if (snapshot == s) {
+                    snapshot = load(s.version() + 1);
+                }
+            } catch (RuntimeException e) {
+                log.warn("⚠️ Không nạp lại được từ điển danh mục: {}", e.getMessage());
+            } finally {
+                reloadLock.unlock();
+            }
+        }
+        return snapshot;
+    }
+
+    private Snapshot load(long version) {
+        Map<Long, Category> byId = new HashMap<>();
+        for (Category c : repo.findAll()) {
+            byId.put(c.getId(), copyOf(c));
+        }
+        log.debug("Đã nạp từ điển danh mục: {} danh mục (version {})", byId.size(), version);
+        return new Snapshot(version, System.currentTimeMillis(), byId);
+    }
+
+    private void remove(Long id) {
+        reloadLock.lock();
+        try {
+            Snapshot s = current();
+            if (s.byId().containsKey(id)) {
+                Map<Long, Category> byId = new HashMap<>(s.byId());
+                byId.remove(id);
+                snapshot = new Snapshot(s.version() + 1, s.loadedAt(), byId);
+            }
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private Category put(Category category) {
+        Category copy = copyOf(category);
+        reloadLock.lock();
+        try {
+            Snapshot s = current();
+            Map<Long, Category> byId = new HashMap<>(s.byId());
+            byId.put(copy.getId(), copy);
+            snapshot = new Snapshot(s.version() + 1, s.loadedAt(), byId);
+        } finally {
+            reloadLock.unlock();
+        }
+        return copy;
+    }
+
+    // Tách khỏi entity đang được quản lý để thay đổi chưa commit không lọt vào từ điển
+    private static Category copyOf(Category c) {
+        return Category.builder()
+                .id(c.getId())
+                .name(c.getName())
+                .status(c.getStatus())
+                .createdAt(c.getCreatedAt())
+                .updatedAt(c.getUpdatedAt())
+                .build();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
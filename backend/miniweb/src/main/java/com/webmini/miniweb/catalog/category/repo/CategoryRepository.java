@@ -3,15 +3,20 @@ package com.webmini.miniweb.catalog.category.repo;
 import com.webmini.miniweb.catalog.category.entity.Category;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface CategoryRepository {
     Category save(Category category);
     Optional<Category> findById(Long id);
+    List<Category> findAll();
     boolean existsByNameIgnoreCase(String name);
     Optional<Category> findByNameIgnoreCase(String name);
     boolean existsById(Long id);
     void deleteById(Long id);
     Page<Category> search(String q, String status, Pageable pageable);
+    Slice<Category> searchSlice(String q, String status, Pageable pageable);
+    long countSearch(String q, String status);
 }
\ No newline at end of file
@@ -1,17 +1,22 @@
 package com.webmini.miniweb.catalog.category.repo;
 
 import com.webmini.miniweb.catalog.category.entity.Category;
+import com.webmini.miniweb.common.FoldedNameFilter;
+import com.webmini.miniweb.common.SqlWhere;
+import com.webmini.miniweb.common.TableVersions;
+import com.webmini.miniweb.common.TextNormalizer;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,39 +26,51 @@ public class CategoryRepositoryImpl implements CategoryRepository {
     @PersistenceContext
     private EntityManager em;
 
+    private volatile boolean namesFolded;
+
+    private final TableVersions tableVersions;
+
+    public CategoryRepositoryImpl(TableVersions tableVersions) {
+        this.tableVersions = tableVersions;
+    }
+
     @Override
     @Transactional
     public Category save(Category category) {
         if (category.getId() == null) {
             // Insert
             String sql = """
-                INSERT INTO categories (name, status, created_at, updated_at)
-                VALUES (?, ?, ?, ?)
+                INSERT INTO categories (name, status, created_at, updated_at, name_folded)
+                VALUES (?, ?, ?, ?, ?)
             """;
             em.createNativeQuery(sql)
                 .setParameter(1, category.getName())
                 .setParameter(2, category.getStatus().name())
                 .setParameter(3, category.getCreatedAt() != null ? category.getCreatedAt() : LocalDateTime.now())
                 .setParameter(4, category.getUpdatedAt())
+                .setParameter(5, TextNormalizer.fold(category.getName()))
                 .executeUpdate();
             
             // Get generated ID
             Long id = ((Number) em.createNativeQuery("SELECT LAST_INSERT_ID()").getSingleResult()).longValue();
             category.setId(id);
+            tableVersions.bump("categories");
             return category;
         } else {
             // Update
             String sql = """
                 UPDATE categories
-                SET name = ?, status = ?, updated_at = ?
+                SET name = ?, status = ?, updated_at = ?, name_folded = ?
                 WHERE id = ?
             """;
             em.createNativeQuery(sql)
                 .setParameter(1, category.getName())
                 .setParameter(2, category.getStatus().name())
                 .setParameter(3, category.getUpdatedAt())
-                .setParameter(4, category.getId())
+                .setParameter(4, TextNormalizer.fold(category.getName()))
+                .setParameter(5, category.getId())
                 .executeUpdate();
+            tableVersions.bump("categories");
             return category;
         }
     }
@@ -77,6 +94,20 @@ public class CategoryRepositoryImpl implements CategoryRepository {
         }
     }
 
+    @Override
+    public List<Category> findAll() {
+        String sql = """
+            SELECT id, name, status, created_at, updated_at
+            FROM categories
+            ORDER BY id
+        """;
+        
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = em.createNativeQuery(sql).getResultList();
+        
+        return rows.stream().map(this::mapToCategory).toList();
+    }
+
     @Override
     public boolean existsByNameIgnoreCase(String name) {
         String sql = "SELECT COUNT(*) FROM categories WHERE LOWER(name) = LOWER(?)";
@@ -121,53 +152,78 @@ public class CategoryRepositoryImpl implements CategoryRepository {
         em.createNativeQuery(sql)
             .setParameter(1, id)
             .executeUpdate();
+        tableVersions.bump("categories");
     }
 
     @Override
     public Page<Category> search(String q, String status, Pageable pageable) {
+        SqlWhere where = buildWhere(q, status);
+        long total = count(where);
+        List<Category> categories = fetchPage(where, pageable, pageable.getPageSize());
+        
+        return new PageImpl<>(categories, pageable, total);
+    }
 
-        StringBuilder whereClause = new StringBuilder(" WHERE 1=1");
-        List<Object> params = new ArrayList<>();
-        int paramIndex = 1;
+    @Override
+    public Slice<Category> searchSlice(String q, String status, Pageable pageable) {
+        SqlWhere where = buildWhere(q, status);
+        // Lấy dư 1 dòng để biết còn trang sau hay không, không cần COUNT(*)
+        List<Category> rows = fetchPage(where, pageable, pageable.getPageSize() + 1);
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        List<Category> categories = hasNext ? rows.subList(0, pageable.getPageSize()) : rows;
+        
+        return new SliceImpl<>(categories, pageable, hasNext);
+    }
+
+    @Override
+    public long countSearch(String q, String status) {
+        return count(buildWhere(q, status));
+    }
+
+    private SqlWhere buildWhere(String q, String status) {
+        SqlWhere where = new SqlWhere();
         
         if (q != null && !q.isBlank()) {
-            whereClause.append(" AND LOWER(name) LIKE ?").append(paramIndex);
-            params.add("%" + q.toLowerCase() + "%");
-            paramIndex++;
+            FoldedNameFilter.apply(where, "", q, hasUnfoldedNames());
         }
-        
         if (status != null && !status.isBlank()) {
-            whereClause.append(" AND status = ?").append(paramIndex);
-            params.add(status);
-            paramIndex++;
+            where.and("status = ?", status);
         }
+        return where;
+    }
 
-        // Return
-        String countSql = "SELECT COUNT(*) FROM categories" + whereClause;
-        var countQuery = em.createNativeQuery(countSql);
-        for (int i = 0; i < params.size(); i++) {
-            countQuery.setParameter(i + 1, params.get(i));
+    /** Còn dòng chưa được FoldedNameBackfillJob điền name_folded; hết rồi thì thôi kiểm tra (dòng mới luôn có). */
+    private boolean hasUnfoldedNames() {
+        if (namesFolded) {
+            return false;
         }
-        Long total = ((Number) countQuery.getSingleResult()).longValue();
-        
-        // Get data with pagination
+        Number pending = (Number) em.createNativeQuery("SELECT EXISTS(SELECT 1 FROM categories WHERE name_folded IS NULL)")
+            .getSingleResult();
+        namesFolded = pending.intValue() == 0;
+        return !namesFolded;
+    }
+
+    private long count(SqlWhere where) {
+        var countQuery = em.createNativeQuery("SELECT COUNT(*) FROM categories" + where.clause());
+        where.bind(countQuery);
+        return ((Number) countQuery.getSingleResult()).longValue();
+    }
+
+    private List<Category> fetchPage(SqlWhere where, Pageable pageable, int limit) {
+        int paramIndex = where.nextIndex();
         String dataSql = """
             SELECT id, name, status, created_at, updated_at
             FROM categories
-        """ + whereClause + " ORDER BY " + buildOrderBy(pageable) + " LIMIT ?" + paramIndex + " OFFSET ?" + (paramIndex + 1);
+        """ + where.clause() + " ORDER BY " + buildOrderBy(pageable) + " LIMIT ?" + paramIndex + " OFFSET ?" + (paramIndex + 1);
         
         var dataQuery = em.createNativeQuery(dataSql);
-        for (int i = 0; i < params.size(); i++) {
-            dataQuery.setParameter(i + 1, params.get(i));
-        }
-        dataQuery.setParameter(paramIndex, pageable.getPageSize());
+        where.bind(dataQuery);
+        dataQuery.setParameter(paramIndex, limit);
         dataQuery.setParameter(paramIndex + 1, (int) pageable.getOffset());
         
         @SuppressWarnings("unchecked")
         List<Object[]> rows = dataQuery.getResultList();
-        List<Category> categories = rows.stream().map(this::mapToCategory).toList();
-        
-        return new PageImpl<>(categories, pageable, total);
+        return rows.stream().map(this::mapToCategory).toList();
     }
 
     private String buildOrderBy(Pageable pageable) {
@@ -3,22 +3,23 @@ package com.webmini.miniweb.catalog.category.service;
 import com.webmini.miniweb.catalog.category.dto.*;
 import com.webmini.miniweb.catalog.category.entity.Category;
 import com.webmini.miniweb.catalog.category.mapper.CategoryMapper;
+import com.webmini.miniweb.catalog.category.repo.CategoryDictionary;
 import com.webmini.miniweb.catalog.category.repo.CategoryRepository;
 import com.webmini.miniweb.catalog.product.repo.ProductRepository;
-import com.webmini.miniweb.catalog.product.entity.Product;
+import com.webmini.miniweb.catalog.product.service.ProductPageTags;
 import com.webmini.miniweb.common.*;
 import com.webmini.miniweb.messaging.service.CategoryEventPublisher;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.Cache;
-import org.springframework.cache.CacheManager;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.LinkedHashMap;
 import java.util.List;
 
 @Slf4j
@@ -29,8 +30,12 @@ public class CategoryService {
     private final CategoryMapper mapper;
     private final ProductRepository productRepo;
     private final CategoryEventPublisher eventPublisher;
-    private final ObjectMapper objectMapper;
-    private final CacheManager cacheManager;
+    private final ReadThroughCache readThrough;
+    private final SearchCountCache searchCounts;
+    private final CacheWriteThrough cacheWriter;
+    private final CategoryDictionary dictionary;
+    private final TaggedPageCache pageCache;
+    private final PlatformTransactionManager transactionManager;
 
     @Transactional
     public CategoryDtos.CategoryResponse create(CategoryDtos.CategoryCreateRequest req) {
@@ -46,49 +51,20 @@ public class CategoryService {
         e.setUpdatedAt(null);
         
         Category saved = repo.save(e);
+        dictionary.onSaved(saved);
         eventPublisher.publishCategoryCreated(saved.getId(), saved.getName(), saved.getStatus().name());
         
-        return mapper.toDto(saved);
+        CategoryDtos.CategoryResponse response = mapper.toDto(saved);
+        cacheWriter.put("categories", saved.getId(), response);
+        cacheWriter.invalidatePages(TaggedPageCache.CATEGORY_PAGES, TaggedPageCache.tableTag("categories"));
+        return response;
     }
 
-    @Transactional(readOnly = true)
+    /** Không mở transaction khi cache hit; chỉ loader khi miss mới mở transaction readOnly. */
     public CategoryDtos.CategoryResponse get(Long id) {
-
-        Cache cache = cacheManager.getCache("categories");
-        if (cache != null) {
-            Cache.ValueWrapper wrapper = cache.get(id);
-            
-            if (wrapper != null) {
-                Object cachedValue = wrapper.get();
-                try {
-                    if (cachedValue instanceof CategoryDtos.CategoryResponse) {
-                        return (CategoryDtos.CategoryResponse) cachedValue;
-                    }
-                    
-                    if (cachedValue instanceof LinkedHashMap) {
-                        CategoryDtos.CategoryResponse converted = objectMapper.convertValue(
-                            cachedValue, 
-                            CategoryDtos.CategoryResponse.class
-                        );
-                        cache.put(id, converted);
-                        return converted;
-                    }
-                    cache.evict(id);
-                } catch (Exception ex) {
-                    cache.evict(id);
-                }
-            }
-        }
-        
-        Category entity = repo.findById(id).orElseThrow(() -> new NotFoundException("Không tìm thấy danh mục với ID: " + id));
-        
-        CategoryDtos.CategoryResponse response = mapper.toDto(entity);
-        
-        if (cache != null) {
-            cache.put(id, response);
-        }
-        
-        return response;
+        return readThrough.get("categories", id, CategoryDtos.CategoryResponse.class, () -> readOnly()
+                .execute(tx -> repo.findById(id).map(mapper::toDto))
+                .orElseThrow(() -> new NotFoundException("Không tìm thấy danh mục với ID: " + id)));
     }
 
 
@@ -103,6 +79,7 @@ public class CategoryService {
             throw new ConflictException("Tên danh mục '" + trimmedName + "' đã tồn tại");
         }
 
+        String oldName = e.getName();
         Category.CategoryStatus oldStatus = e.getStatus();
         Category.CategoryStatus newStatus = Category.CategoryStatus.valueOf(req.status());
 
@@ -111,10 +88,12 @@ public class CategoryService {
         e.setUpdatedAt(java.time.LocalDateTime.now());
         
         Category saved = repo.save(e);
+        dictionary.onSaved(saved);
 
         if (oldStatus == Category.CategoryStatus.ACTIVE &&
             newStatus == Category.CategoryStatus.INACTIVE) {
-            cascadeInactiveProducts(saved);
+            // Không giữ khóa FOR UPDATE của hàng chục nghìn sản phẩm tới khi danh mục commit
+            afterCommitDetached(() -> cascadeInactiveProducts(id));
         }
 
         // Publish event
@@ -127,7 +106,16 @@ public class CategoryService {
             );
         }
 
-        return mapper.toDto(saved);
+        // Sản phẩm trong cache nhúng tên danh mục: đổi tên thì xóa đúng các entry đó
+        if (!oldName.equals(saved.getName())) {
+            cacheWriter.evictDependents("categories", id);
+            cacheWriter.invalidatePages(TaggedPageCache.PRODUCT_PAGES, ProductPageTags.forWrite(id));
+        }
+
+        CategoryDtos.CategoryResponse response = mapper.toDto(saved);
+        cacheWriter.put("categories", id, response);
+        cacheWriter.invalidatePages(TaggedPageCache.CATEGORY_PAGES, TaggedPageCache.tableTag("categories"));
+        return response;
     }
 
     @Transactional
@@ -144,42 +132,83 @@ public class CategoryService {
         }
         
         repo.deleteById(id);
+        dictionary.onDeleted(id);
+        cacheWriter.evict("categories", id);
+        cacheWriter.invalidatePages(TaggedPageCache.CATEGORY_PAGES, TaggedPageCache.tableTag("categories"));
     }
 
-    @Transactional(readOnly = true)
+    /** Trang không có q được lấy từ TaggedPageCache, chỉ khi miss mới mở transaction readOnly để truy vấn. */
     public Page<CategoryDtos.CategoryResponse> search(String q, String status, Pageable pageable) {
         if (status != null && !status.isBlank()) {
             validateStatus(status);
         }
-        
-        return repo.search(q, status, pageable).map(mapper::toDto);
+        if (q == null || q.isBlank()) {
+            return pageCache.get(TaggedPageCache.CATEGORY_PAGES, List.of(TaggedPageCache.tableTag("categories")), pageable,
+                    () -> readOnly().execute(tx -> repo.search(q, status, pageable).map(mapper::toDto)),
+                    status);
+        }
+        return readOnly().execute(tx -> repo.search(q, status, pageable).map(mapper::toDto));
+    }
+
+    private TransactionTemplate readOnly() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        return tx;
+    }
+
+    /** Không chạy COUNT(*): chỉ trả về hasNext (infinite scroll). */
+    @Transactional(readOnly = true)
+    public Slice<CategoryDtos.CategoryResponse> searchSlice(String q, String status, Pageable pageable) {
+        if (status != null && !status.isBlank()) {
+            validateStatus(status);
+        }
+        return repo.searchSlice(q, status, pageable).map(mapper::toDto);
+    }
+
+    /** Tổng số dòng lấy từ cache ngắn hạn, có thể lệch một chút so với thực tế. */
+    @Transactional(readOnly = true)
+    public Page<CategoryDtos.CategoryResponse> searchCachedCount(String q, String status, Pageable pageable) {
+        if (status != null && !status.isBlank()) {
+            validateStatus(status);
+        }
+        Slice<Category> slice = repo.searchSlice(q, status, pageable);
+        long total = searchCounts.get(SearchCountCache.CATEGORY_COUNTS, () -> repo.countSearch(q, status), q, status);
+        long seen = pageable.getOffset() + slice.getNumberOfElements() + (slice.hasNext() ? 1 : 0);
+        return new PageImpl<>(slice.getContent(), pageable, Math.max(total, seen)).map(mapper::toDto);
     }
 
 
-    private void cascadeInactiveProducts(Category category) {
-        List<Product> activeProducts = productRepo.findByCategoryIdAndStatus(
-            category.getId(), 
-            Product.ProductStatus.ACTIVE
+    private void cascadeInactiveProducts(Long categoryId) {
+        List<Long> deactivated = productRepo.deactivateActiveByCategoryId(
+            categoryId,
+            java.time.LocalDateTime.now()
         );
         
-        if (activeProducts.isEmpty()) {
-            return;
+        if (!deactivated.isEmpty()) {
+            cacheWriter.evictAll("products", deactivated);
+            cacheWriter.invalidatePages(TaggedPageCache.PRODUCT_PAGES, ProductPageTags.forWrite(categoryId));
+            log.info("Đã chuyển {} sản phẩm của danh mục {} sang INACTIVE", deactivated.size(), categoryId);
         }
-        
-        int count = 0;
-        Cache productCache = cacheManager.getCache("products");
-        
-        for (Product product : activeProducts) {
-            product.setStatus(Product.ProductStatus.INACTIVE);
-            product.setUpdatedAt(java.time.LocalDateTime.now());
-            productRepo.save(product);
-            
-            if (productCache != null) {
-                productCache.evict(product.getId());
+    }
+
+    /**
+     * Chạy action sau khi transaction hiện tại commit, tách hẳn khỏi nó (NOT_SUPPORTED): mỗi chunk ghi bên trong
+     * tự mở transaction riêng, và việc cập nhật cache mà action đăng ký vẫn được chạy khi action xong.
+     * Lỗi ở đây không ảnh hưởng thao tác đã commit; event STATUS_CHANGED cho listener chạy lại (idempotent).
+     */
+    private void afterCommitDetached(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                TransactionTemplate detached = new TransactionTemplate(transactionManager);
+                detached.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+                try {
+                    detached.executeWithoutResult(status -> action.run());
+                } catch (RuntimeException e) {
+                    log.warn("⚠️ Lỗi khi chuyển sản phẩm sang INACTIVE sau commit: {}", e.getMessage());
+                }
             }
-            
-            count++;
-        }
+        });
     }
 
     private String validateAndTrimName(String name) {
@@ -1,11 +1,14 @@
 package com.webmini.miniweb.catalog.product.controller;
 import com.webmini.miniweb.catalog.product.dto.*;
 import com.webmini.miniweb.catalog.product.service.ProductService;
+import com.webmini.miniweb.common.CursorPage;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.*;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/products")
 @RequiredArgsConstructor
@@ -22,6 +25,18 @@ public class ProductController {
         return service.get(id);
     }
 
+    /** Lấy nhiều sản phẩm một lần: {@code /batch?ids=1,2,3}. */
+    @GetMapping("/batch")
+    public ProductDtos.ProductBatchResponse getBatch(@RequestParam List<Long> ids) {
+        return service.getBatch(ids);
+    }
+
+    /** Như GET /batch nhưng nhận danh sách dài trong body. */
+    @PostMapping("/batch")
+    public ProductDtos.ProductBatchResponse getBatch(@Valid @RequestBody ProductDtos.ProductBatchRequest req) {
+        return service.getBatch(req.ids());
+    }
+
     @PutMapping("/{id}")
     public ProductDtos.ProductResponse update(@PathVariable Long id, @Valid @RequestBody ProductDtos.ProductUpdateRequest req) {
         return service.update(id, req);
@@ -41,12 +56,53 @@ public class ProductController {
             @RequestParam(required = false) Integer minStockLt,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(required = false) String sort
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "exact") String count
     ) {
         Pageable pageable = toPageable(page, size, sort, "createdAt,desc");
+        if ("cached".equalsIgnoreCase(count)) {
+            return service.searchCachedCount(q, sku, categoryId, status, minStockLt, pageable);
+        }
         return service.search(q, sku, categoryId, status, minStockLt, pageable);
     }
 
+    /**
+     * count=none: trả về Slice (chỉ có hasNext), bỏ qua truy vấn COUNT(*).
+     * Có thêm {@code after} thì đi vào phân trang keyset (vốn không COUNT), tránh hai handler cùng khớp.
+     */
+    @GetMapping(params = {"count=none", "!after"})
+    public Slice<ProductDtos.ProductResponse> searchSlice(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String sku,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Integer minStockLt,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String sort
+    ) {
+        Pageable pageable = toPageable(page, size, sort, "createdAt,desc");
+        return service.searchSlice(q, sku, categoryId, status, minStockLt, pageable);
+    }
+
+    /**
+     * Phân trang keyset: gửi {@code after=} (rỗng) để lấy trang đầu, sau đó gửi lại {@code nextCursor}.
+     */
+    @GetMapping(params = "after")
+    public CursorPage<ProductDtos.ProductResponse> searchAfter(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String sku,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Integer minStockLt,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String sort
+    ) {
+        Sort.Order order = toPageable(0, Math.max(size, 1), sort, "createdAt,desc").getSort().iterator().next();
+        return service.searchAfter(q, sku, categoryId, status, minStockLt, order, after, size);
+    }
+
     private Pageable toPageable(int page, int size, String sort, String fallback) {
         String s = (sort == null || sort.isBlank()) ? fallback : sort;
         String[] parts = s.split(",");
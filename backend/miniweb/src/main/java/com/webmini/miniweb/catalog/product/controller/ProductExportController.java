@@ -1,10 +1,9 @@
 package com.webmini.miniweb.catalog.product.controller;
 
-import com.webmini.miniweb.catalog.product.entity.Product;
+import com.webmini.miniweb.catalog.product.dto.ProductDtos;
 import com.webmini.miniweb.catalog.product.repo.ProductRepository;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.*;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
@@ -13,6 +12,7 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/products")
@@ -66,25 +66,26 @@ public class ProductExportController {
                 "ID","SKU","Name","Category","Price","Stock","Status","CreatedAt","UpdatedAt") + "\n";
         resp.getOutputStream().write(header.getBytes(StandardCharsets.UTF_8));
 
-        int page = 0, size = 500;
-        Page<Product> slice;
+        int size = 500;
+        Long lastId = 0L;
+        List<ProductDtos.ProductResponse> slice;
         do {
-            slice = repo.findAllWithCategory(PageRequest.of(page, size));
-            for (Product p : slice) {
-                String line = csv(p.getId()) + "," +
-                        csv(p.getSku()) + "," +
-                        csv(p.getName()) + "," +
-                        csv(p.getCategory()!=null ? p.getCategory().getName() : "") + "," +
-                        csv(p.getPrice()) + "," +
-                        csv(p.getStock()) + "," +
-                        csv(p.getStatus()) + "," +
-                        csv(p.getCreatedAt()) + "," +
-                        csv(p.getUpdatedAt()) + "\n";
+            slice = repo.findAllAfterId(lastId, size);
+            for (ProductDtos.ProductResponse p : slice) {
+                String line = csv(p.id()) + "," +
+                        csv(p.sku()) + "," +
+                        csv(p.name()) + "," +
+                        csv(p.categoryName()) + "," +
+                        csv(p.price()) + "," +
+                        csv(p.stock()) + "," +
+                        csv(p.status()) + "," +
+                        csv(p.createdAt()) + "," +
+                        csv(p.updatedAt()) + "\n";
                 resp.getOutputStream().write(line.getBytes(StandardCharsets.UTF_8));
             }
             resp.flushBuffer();
-            page++;
-        } while (!slice.isLast());
+            if (!slice.isEmpty()) lastId = slice.get(slice.size() - 1).id();
+        } while (slice.size() == size);
     }
 
     /** Escape CSV theo RFC4180 (bao quanh bởi " nếu có dấu phẩy/dấu nháy/newline) */
@@ -0,0 +1,42 @@
+package com.webmini.miniweb.catalog.product.controller;
+
+import com.webmini.miniweb.catalog.product.dto.ProductDtos;
+import com.webmini.miniweb.catalog.product.service.ProductImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+@RestController
+@RequestMapping("/api/products")
+@RequiredArgsConstructor
+public class ProductImportController {
+
+    private final ProductImportService importService;
+
+    /** Upload multipart (field "file"). */
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ProductDtos.ProductImportResult importMultipart(@RequestParam("file") MultipartFile file) throws Exception {
+        try (InputStream in = file.getInputStream()) {
+            return importCsv(in);
+        }
+    }
+
+    /** Gửi thẳng nội dung CSV trong body (Content-Type: text/csv), đọc dần từ request stream. */
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ProductDtos.ProductImportResult importRaw(HttpServletRequest request) throws Exception {
+        try (InputStream in = request.getInputStream()) {
+            return importCsv(in);
+        }
+    }
+
+    private ProductDtos.ProductImportResult importCsv(InputStream in) throws Exception {
+        return importService.importCsv(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+    }
+}
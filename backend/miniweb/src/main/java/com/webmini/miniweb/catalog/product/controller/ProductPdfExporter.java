@@ -1,12 +1,11 @@
 package com.webmini.miniweb.catalog.product.controller;
 
-import com.webmini.miniweb.catalog.product.entity.Product;
+import com.webmini.miniweb.catalog.product.dto.ProductDtos;
 import com.webmini.miniweb.catalog.product.repo.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import net.sf.jasperreports.engine.*;
 import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
 import org.springframework.core.io.ClassPathResource;
-import org.springframework.data.domain.*;
 import org.springframework.stereotype.Component;
 
 import java.io.InputStream;
@@ -24,15 +23,16 @@ public class ProductPdfExporter {
 
     public void exportAll(OutputStream os) throws Exception {
         List<ProductRow> rows = new ArrayList<>();
-        int page = 0, size = 1000;
-        Page<Product> slice;
+        int size = 1000;
+        Long lastId = 0L;
+        List<ProductDtos.ProductResponse> slice;
         do {
-            slice = repo.findAllWithCategory(PageRequest.of(page, size));
-            for (Product p : slice) {
+            slice = repo.findAllAfterId(lastId, size);
+            for (ProductDtos.ProductResponse p : slice) {
                 rows.add(ProductRow.of(p));
             }
-            page++;
-        } while (!slice.isLast());
+            if (!slice.isEmpty()) lastId = slice.get(slice.size() - 1).id();
+        } while (slice.size() == size);
 
         try (InputStream in = new ClassPathResource("reports/products_report.jrxml").getInputStream()) {
             JasperReport rpt = JasperCompileManager.compileReport(in);
@@ -60,16 +60,16 @@ public class ProductPdfExporter {
         private String status;
         private String createdAt;
 
-        public static ProductRow of(Product p) {
+        public static ProductRow of(ProductDtos.ProductResponse p) {
             ProductRow r = new ProductRow();
-            r.id = p.getId();
-            r.sku = p.getSku();
-            r.name = p.getName();
-            r.category = p.getCategory() != null ? p.getCategory().getName() : "";
-            r.price = p.getPrice();
-            r.stock = p.getStock();
-            r.status = String.valueOf(p.getStatus());
-            r.createdAt = p.getCreatedAt() != null ? p.getCreatedAt().toString() : "";
+            r.id = p.id();
+            r.sku = p.sku();
+            r.name = p.name();
+            r.category = p.categoryName() != null ? p.categoryName() : "";
+            r.price = p.price();
+            r.stock = p.stock();
+            r.status = p.status();
+            r.createdAt = p.createdAt() != null ? p.createdAt().toString() : "";
             return r;
         }
 
@@ -3,6 +3,7 @@ package com.webmini.miniweb.catalog.product.dto;
 import jakarta.validation.constraints.*;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 public class ProductDtos {
     
@@ -58,6 +59,17 @@ public class ProductDtos {
             String status
     ) {}
 
+    public record ProductBatchRequest(
+            @NotEmpty(message = "Danh sách ID không được để trống")
+            List<@NotNull(message = "ID không được để trống") Long> ids
+    ) {}
+
+    /** Sản phẩm theo đúng thứ tự ids yêu cầu; id không tồn tại nằm trong missingIds. */
+    public record ProductBatchResponse(
+            List<ProductResponse> items,
+            List<Long> missingIds
+    ) {}
+
     public record ProductResponse(
             Long id,
             String sku,
@@ -70,4 +82,17 @@ public class ProductDtos {
             java.time.LocalDateTime createdAt,
             java.time.LocalDateTime updatedAt
     ) {}
-}
\ No newline at end of file
+
+    public record ProductImportError(
+            long line,
+            String sku,
+            String message
+    ) {}
+
+    public record ProductImportResult(
+            long totalRows,
+            long imported,
+            long failed,
+            java.util.List<ProductImportError> errors
+    ) {}
+}
@@ -11,9 +11,16 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "products", indexes = {
-        @Index(name = "idx_products_category_id", columnList = "category_id"),
-        @Index(name = "idx_products_status", columnList = "status"),
-        @Index(name = "idx_products_name_like", columnList = "name")
+        @Index(name = "idx_products_name_like", columnList = "name"),
+        @Index(name = "idx_products_created_at", columnList = "created_at"),
+        @Index(name = "idx_products_updated_at", columnList = "updated_at"),
+        @Index(name = "idx_products_price", columnList = "price"),
+        @Index(name = "idx_products_stock", columnList = "stock"),
+        @Index(name = "idx_products_cat_status_created", columnList = "category_id, status, created_at, id"),
+        @Index(name = "idx_products_cat_status_price", columnList = "category_id, status, price, id"),
+        @Index(name = "idx_products_cat_status_name", columnList = "category_id, status, name, id"),
+        @Index(name = "idx_products_status_created", columnList = "status, created_at, id"),
+        @Index(name = "idx_products_status_stock", columnList = "status, stock")
 })
 @Getter
 @Setter
@@ -0,0 +1,81 @@
+package com.webmini.miniweb.catalog.product.repo;
+
+import com.webmini.miniweb.catalog.product.dto.ProductDtos;
+import com.webmini.miniweb.common.ValidationException;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Con trỏ keyset cho danh sách sản phẩm: khóa sắp xếp của dòng cuối cùng + id.
+ * Được mã hóa thành token base64url "mờ" để client gửi lại qua tham số {@code after}.
+ */
+public record ProductCursor(String property, Sort.Direction direction, Object value, Long id) {
+
+    private static final String SEP = "|";
+
+    public static ProductCursor of(ProductDtos.ProductResponse p, Sort.Order order) {
+        return new ProductCursor(order.getProperty(), order.getDirection(), valueOf(p, order.getProperty()), p.id());
+    }
+
+    public Sort.Order toOrder() {
+        return new Sort.Order(direction, property);
+    }
+
+    public String encode() {
+        String raw = property + SEP + direction.name() + SEP + id + SEP + (value == null ? "n" : "v" + format(value));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 4);
+            if (parts.length != 4 || parts[3].isEmpty()) {
+                throw new IllegalArgumentException(raw);
+            }
+            String property = parts[0];
+            Sort.Direction direction = Sort.Direction.valueOf(parts[1]);
+            Long id = Long.parseLong(parts[2]);
+            Object value = parts[3].charAt(0) == 'n' ? null : parse(property, parts[3].substring(1));
+            return new ProductCursor(property, direction, value, id);
+        } catch (ValidationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new ValidationException("Cursor phân trang không hợp lệ");
+        }
+    }
+
+    private static Object valueOf(ProductDtos.ProductResponse p, String property) {
+        return switch (property) {
+            case "id" -> p.id();
+            case "sku" -> p.sku();
+            case "name" -> p.name();
+            case "price" -> p.price();
+            case "stock" -> p.stock();
+            case "status" -> p.status();
+            case "categoryId" -> p.categoryId();
+            case "createdAt" -> p.createdAt();
+            case "updatedAt" -> p.updatedAt();
+            default -> throw new ValidationException("Không hỗ trợ sắp xếp theo trường: " + property);
+        };
+    }
+
+    private static String format(Object value) {
+        return value instanceof BigDecimal d ? d.toPlainString() : String.valueOf(value);
+    }
+
+    private static Object parse(String property, String s) {
+        return switch (property) {
+            case "id", "categoryId" -> Long.parseLong(s);
+            case "sku", "name", "status" -> s;
+            case "price" -> new BigDecimal(s);
+            case "stock" -> Integer.parseInt(s);
+            case "createdAt", "updatedAt" -> LocalDateTime.parse(s);
+            default -> throw new ValidationException("Không hỗ trợ sắp xếp theo trường: " + property);
+        };
+    }
+}
@@ -0,0 +1,152 @@
+package com.webmini.miniweb.catalog.product.repo;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dùng khi phát triển (bật bằng catalog.search.index-advisor.enabled=true): ghi nhận các "dạng" truy vấn
+ * tìm kiếm sản phẩm (cột lọc bằng, cột lọc khoảng, cột sắp xếp) và đối chiếu với index B-tree hiện có của
+ * bảng products trong information_schema. Dạng nào không có index phù hợp được log cảnh báo một lần,
+ * toàn bộ thống kê xem qua actuator /actuator/indexadvisor.
+ */
+@Slf4j
+@Component
+@Endpoint(id = "indexadvisor")
+@RequiredArgsConstructor
+public class ProductIndexAdvisor {
+
+    private final JdbcTemplate jdbc;
+
+    @Value("${catalog.search.index-advisor.enabled:false}")
+    private boolean enabled;
+
+    private final Map<QueryShape, ShapeStats> shapes = new ConcurrentHashMap<>();
+    private volatile Map<String, List<String>> indexes;
+
+    /** FULL: index phục vụ cả lọc và sắp xếp; FILTER_ONLY: còn filesort/lọc thêm; NONE: quét toàn bảng. */
+    public enum Support { FULL, FILTER_ONLY, NONE, FULLTEXT }
+
+    /**
+     * @param equality cột lọc bằng (=), đã sắp xếp để hai truy vấn cùng tập cột là một dạng
+     * @param range    cột lọc khoảng (stock &lt; ?), hoặc null
+     * @param fullText true nếu có từ khóa q (đường MATCH/LIKE trên name_folded)
+     * @param sort     cột sắp xếp theo thứ tự ORDER BY
+     */
+    public record QueryShape(List<String> equality, String range, boolean fullText, List<String> sort) {
+        @Override
+        public String toString() {
+            return "eq=" + equality + " range=" + range + (fullText ? " fulltext" : "") + " sort=" + sort;
+        }
+    }
+
+    public record ShapeReport(String shape, long hits, Support support, String index) {}
+
+    private record ShapeStats(LongAdder hits, Support support, String index) {}
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void record(QueryShape shape) {
+        if (!enabled) {
+            return;
+        }
+        shapes.computeIfAbsent(shape, this::evaluate).hits().increment();
+    }
+
+    @ReadOperation
+    public List<ShapeReport> report() {
+        List<ShapeReport> report = new ArrayList<>();
+        shapes.forEach((shape, stats) ->
+                report.add(new ShapeReport(shape.toString(), stats.hits().sum(), stats.support(), stats.index())));
+        report.sort(Comparator.comparingLong(ShapeReport::hits).reversed());
+        return report;
+    }
+
+    private ShapeStats evaluate(QueryShape shape) {
+        Support best = Support.NONE;
+        String bestIndex = null;
+        if (shape.fullText()) {
+            best = Support.FULLTEXT;
+        } else if (shape.equality().contains("sku_normalized")) {
+            best = Support.FULL;
+            bestIndex = "uq_products_sku_normalized";
+        } else {
+            try {
+                for (Map.Entry<String, List<String>> index : indexes().entrySet()) {
+                    Support support = supportOf(index.getValue(), shape);
+                    if (support.ordinal() < best.ordinal()) {
+                        best = support;
+                        bestIndex = index.getKey();
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.warn("⚠️ Index advisor không đọc được information_schema: {}", e.getMessage());
+            }
+        }
+
+        if (best == Support.NONE) {
+            log.warn("🐢 Truy vấn sản phẩm không có index hỗ trợ: {}", shape);
+        } else if (best == Support.FILTER_ONLY) {
+            log.info("Truy vấn sản phẩm chỉ dùng được một phần index {} (còn filesort/lọc thêm): {}", bestIndex, shape);
+        }
+        return new ShapeStats(new LongAdder(), best, bestIndex);
+    }
+
+    private static Support supportOf(List<String> indexColumns, QueryShape shape) {
+        // InnoDB tự nối khóa chính vào cuối mọi secondary index
+        List<String> cols = new ArrayList<>(indexColumns);
+        if (!cols.contains("id")) {
+            cols.add("id");
+        }
+        Set<String> eq = new HashSet<>(shape.equality());
+        int prefix = 0;
+        while (prefix < cols.size() && eq.contains(cols.get(prefix))) {
+            prefix++;
+        }
+        List<String> rest = cols.subList(prefix, cols.size());
+        boolean sortServed = rest.size() >= shape.sort().size()
+                && rest.subList(0, shape.sort().size()).equals(shape.sort());
+        boolean rangeServed = shape.range() == null || (!rest.isEmpty() && rest.get(0).equals(shape.range()));
+
+        if (prefix == eq.size() && sortServed
+                && (shape.range() == null || shape.sort().isEmpty() || shape.sort().get(0).equals(shape.range()))) {
+            return Support.FULL;
+        }
+        if (prefix > 0 || (prefix == eq.size() && (sortServed || (shape.range() != null && rangeServed)))) {
+            return Support.FILTER_ONLY;
+        }
+        return Support.NONE;
+    }
+
+    private Map<String, List<String>> indexes() {
+        Map<String, List<String>> result = indexes;
+        if (result == null) {
+            Map<String, List<String>> loaded = new LinkedHashMap<>();
+            jdbc.query("""
+                    SELECT INDEX_NAME, COLUMN_NAME FROM information_schema.STATISTICS
+                    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'products' AND INDEX_TYPE = 'BTREE'
+                    ORDER BY INDEX_NAME, SEQ_IN_INDEX
+                    """, rs -> {
+                loaded.computeIfAbsent(rs.getString(1), k -> new ArrayList<>()).add(rs.getString(2));
+            });
+            indexes = result = loaded;
+        }
+        return result;
+    }
+}
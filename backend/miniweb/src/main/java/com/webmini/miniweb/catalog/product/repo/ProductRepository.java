@@ -1,24 +1,40 @@
 package com.webmini.miniweb.catalog.product.repo;
 
+import com.webmini.miniweb.catalog.product.dto.ProductDtos;
 import com.webmini.miniweb.catalog.product.entity.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface ProductRepository {
     Product save(Product product);
     Optional<Product> findById(Long id);
+    Optional<ProductDtos.ProductResponse> findResponseById(Long id);
+    List<ProductDtos.ProductResponse> findResponsesByIds(Collection<Long> ids);
     boolean existsBySkuIgnoreCase(String sku);
+    Set<String> findExistingSkusIgnoreCase(Collection<String> skus);
     boolean existsByCategoryId(Long categoryId);
     List<Product> findAllByCategoryId(Long categoryId);
     Page<Product> findAllWithCategory(Pageable pageable);
     boolean existsById(Long id);
     void deleteById(Long id);
-    Page<Product> search(String q, String sku, Long categoryId, String status, Integer minStockLt, Pageable pageable);
+    Page<ProductDtos.ProductResponse> search(String q, String sku, Long categoryId, String status, Integer minStockLt, Pageable pageable);
+    Page<ProductDtos.ProductResponse> searchByIds(Collection<Long> ids, String sku, Long categoryId, String status, Integer minStockLt, Pageable pageable);
+    Slice<ProductDtos.ProductResponse> searchSlice(String q, String sku, Long categoryId, String status, Integer minStockLt, Pageable pageable);
+    long countSearch(String q, String sku, Long categoryId, String status, Integer minStockLt);
+    List<ProductDtos.ProductResponse> searchAfter(String q, String sku, Long categoryId, String status, Integer minStockLt,
+                                                   Sort.Order order, ProductCursor after, int limit);
+    List<ProductDtos.ProductResponse> findAllAfterId(Long afterId, int limit);
     List<Product> findAll();
     void saveAll(List<Product> products);
+    List<Long> deactivateActiveByCategoryId(Long categoryId, LocalDateTime updatedAt);
     
     List<Product> findByCategoryIdAndStatus(Long categoryId, Product.ProductStatus status);
 }
\ No newline at end of file
@@ -1,36 +1,95 @@
 package com.webmini.miniweb.catalog.product.repo;
 
 import com.webmini.miniweb.catalog.category.entity.Category;
+import com.webmini.miniweb.catalog.category.repo.CategoryDictionary;
+import com.webmini.miniweb.catalog.product.dto.ProductDtos;
 import com.webmini.miniweb.catalog.product.entity.Product;
+import com.webmini.miniweb.common.FoldedNameFilter;
+import com.webmini.miniweb.common.SqlWhere;
+import com.webmini.miniweb.common.TableVersions;
+import com.webmini.miniweb.common.TextNormalizer;
+import com.webmini.miniweb.common.ValidationException;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Repository
 public class ProductRepositoryImpl implements ProductRepository {
     
+    /**
+     * Chỉ đọc bảng products; tên danh mục lấy từ snapshot của CategoryDictionary (xem queryResponses)
+     * nên không cần JOIN categories. Cột theo thứ tự mà mapToResponse đọc theo vị trí.
+     */
+    private static final String SELECT_RESPONSE = """
+            SELECT p.id, p.sku, p.name, p.category_id, p.price, p.stock, p.status, p.created_at, p.updated_at
+            FROM products p
+        """;
+    
     @PersistenceContext
     private EntityManager em;
 
+    @Value("${catalog.product.batch-size:1000}")
+    private int batchSize;
+
+    private final TransactionTemplate chunkTx;
+    private volatile boolean namesFolded;
+
+    private final JdbcTemplate jdbc;
+    private final CategoryDictionary categoryDictionary;
+    private final ProductIndexAdvisor indexAdvisor;
+    private final TableVersions tableVersions;
+
+    public ProductRepositoryImpl(PlatformTransactionManager transactionManager, JdbcTemplate jdbc,
+                                 CategoryDictionary categoryDictionary, ProductIndexAdvisor indexAdvisor,
+                                 TableVersions tableVersions) {
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.jdbc = jdbc;
+        this.categoryDictionary = categoryDictionary;
+        this.indexAdvisor = indexAdvisor;
+        this.tableVersions = tableVersions;
+    }
+
     @Override
     @Transactional
     public Product save(Product product) {
         if (product.getId() == null) {
             // Insert
             String sql = """
-                INSERT INTO products (sku, name, category_id, price, stock, status, created_at, updated_at)
-                VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                INSERT INTO products (sku, name, category_id, price, stock, status, created_at, updated_at, name_folded)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
             """;
             em.createNativeQuery(sql)
                 .setParameter(1, product.getSku())
@@ -41,17 +100,19 @@ public class ProductRepositoryImpl implements ProductRepository {
                 .setParameter(6, product.getStatus().name())
                 .setParameter(7, product.getCreatedAt() != null ? product.getCreatedAt() : LocalDateTime.now())
                 .setParameter(8, product.getUpdatedAt())
+                .setParameter(9, TextNormalizer.fold(product.getName()))
                 .executeUpdate();
             
             // Get generated ID
             Long id = ((Number) em.createNativeQuery("SELECT LAST_INSERT_ID()").getSingleResult()).longValue();
             product.setId(id);
+            tableVersions.bump("products");
             return product;
         } else {
             // Update
             String sql = """
                 UPDATE products
-                SET sku = ?, name = ?, category_id = ?, price = ?, stock = ?, status = ?, updated_at = ?
+                SET sku = ?, name = ?, category_id = ?, price = ?, stock = ?, status = ?, updated_at = ?, name_folded = ?
                 WHERE id = ?
             """;
             em.createNativeQuery(sql)
@@ -62,8 +123,10 @@ public class ProductRepositoryImpl implements ProductRepository {
                 .setParameter(5, product.getStock())
                 .setParameter(6, product.getStatus().name())
                 .setParameter(7, product.getUpdatedAt())
-                .setParameter(8, product.getId())
+                .setParameter(8, TextNormalizer.fold(product.getName()))
+                .setParameter(9, product.getId())
                 .executeUpdate();
+            tableVersions.bump("products");
             return product;
         }
     }
@@ -71,10 +134,8 @@ public class ProductRepositoryImpl implements ProductRepository {
     @Override
     public Optional<Product> findById(Long id) {
         String sql = """
-            SELECT p.id, p.sku, p.name, p.price, p.stock, p.status, p.created_at, p.updated_at,
-                   c.id as cat_id, c.name as cat_name, c.status as cat_status, c.created_at as cat_created, c.updated_at as cat_updated
+            SELECT p.id, p.sku, p.name, p.price, p.stock, p.status, p.created_at, p.updated_at, p.category_id
             FROM products p
-            INNER JOIN categories c ON p.category_id = c.id
             WHERE p.id = ?
         """;
         
@@ -91,13 +152,26 @@ public class ProductRepositoryImpl implements ProductRepository {
 
     @Override
     public boolean existsBySkuIgnoreCase(String sku) {
-        String sql = "SELECT COUNT(*) FROM products WHERE LOWER(sku) = LOWER(?)";
+        String sql = "SELECT COUNT(*) FROM products WHERE sku_normalized = LOWER(?)";
         Long count = ((Number) em.createNativeQuery(sql)
             .setParameter(1, sku)
             .getSingleResult()).longValue();
         return count > 0;
     }
 
+    /** Trả về các SKU (dạng chữ thường) đã tồn tại trong số SKU truyền vào. */
+    @Override
+    public Set<String> findExistingSkusIgnoreCase(Collection<String> skus) {
+        if (skus.isEmpty()) {
+            return Set.of();
+        }
+        @SuppressWarnings("unchecked")
+        List<String> rows = em.createNativeQuery("SELECT sku_normalized FROM products WHERE sku_normalized IN (:skus)")
+            .setParameter("skus", skus.stream().map(s -> s.toLowerCase(Locale.ROOT)).toList())
+            .getResultList();
+        return new HashSet<>(rows);
+    }
+
     @Override
     public boolean existsByCategoryId(Long categoryId) {
         String sql = "SELECT COUNT(*) FROM products WHERE category_id = ?";
@@ -110,10 +184,8 @@ public class ProductRepositoryImpl implements ProductRepository {
     @Override
     public List<Product> findAllByCategoryId(Long categoryId) {
         String sql = """
-            SELECT p.id, p.sku, p.name, p.price, p.stock, p.status, p.created_at, p.updated_at,
-                   c.id as cat_id, c.name as cat_name, c.status as cat_status, c.created_at as cat_created, c.updated_at as cat_updated
+            SELECT p.id, p.sku, p.name, p.price, p.stock, p.status, p.created_at, p.updated_at, p.category_id
             FROM products p
-            INNER JOIN categories c ON p.category_id = c.id
             WHERE p.category_id = ?
             ORDER BY p.id
         """;
@@ -129,10 +201,8 @@ public class ProductRepositoryImpl implements ProductRepository {
     @Override
     public List<Product> findByCategoryIdAndStatus(Long categoryId, Product.ProductStatus status) {
         String sql = """
-            SELECT p.id, p.sku, p.name, p.price, p.stock, p.status, p.created_at, p.updated_at,
-                   c.id as cat_id, c.name as cat_name, c.status as cat_status, c.created_at as cat_created, c.updated_at as cat_updated
+            SELECT p.id, p.sku, p.name, p.price, p.stock, p.status, p.created_at, p.updated_at, p.category_id
             FROM products p
-            INNER JOIN categories c ON p.category_id = c.id
             WHERE p.category_id = ?
             AND p.status = ?
             ORDER BY p.id
@@ -153,10 +223,8 @@ public class ProductRepositoryImpl implements ProductRepository {
         Long total = ((Number) em.createNativeQuery(countSql).getSingleResult()).longValue();
         
         String dataSql = """
-            SELECT p.id, p.sku, p.name, p.price, p.stock, p.status, p.created_at, p.updated_at,
-                   c.id as cat_id, c.name as cat_name, c.status as cat_status, c.created_at as cat_created, c.updated_at as cat_updated
+            SELECT p.id, p.sku, p.name, p.price, p.stock, p.status, p.created_at, p.updated_at, p.category_id
             FROM products p
-            INNER JOIN categories c ON p.category_id = c.id
             ORDER BY p.id
             LIMIT ? OFFSET ?
         """;
@@ -188,79 +256,101 @@ public class ProductRepositoryImpl implements ProductRepository {
         em.createNativeQuery(sql)
             .setParameter(1, id)
             .executeUpdate();
+        tableVersions.bump("products");
     }
 
     @Override
-    public Page<Product> search(String q, String sku, Long categoryId, String status, Integer minStockLt, Pageable pageable) {
-        StringBuilder whereClause = new StringBuilder(" WHERE 1=1");
-        List<Object> params = new ArrayList<>();
-        int paramIndex = 1;
-        
-        if (q != null && !q.isBlank()) {
-            whereClause.append(" AND LOWER(p.name) LIKE ?").append(paramIndex);
-            params.add("%" + q.toLowerCase() + "%");
-            paramIndex++;
-        }
-        
-        if (sku != null && !sku.isBlank()) {
-            whereClause.append(" AND LOWER(p.sku) = LOWER(?").append(paramIndex).append(")");
-            params.add(sku);
-            paramIndex++;
-        }
-        
-        if (categoryId != null) {
-            whereClause.append(" AND p.category_id = ?").append(paramIndex);
-            params.add(categoryId);
-            paramIndex++;
+    public Optional<ProductDtos.ProductResponse> findResponseById(Long id) {
+        List<ProductDtos.ProductResponse> rows = queryResponses(SELECT_RESPONSE + " WHERE p.id = ?", id);
+        return rows.stream().findFirst();
+    }
+
+    @Override
+    public List<ProductDtos.ProductResponse> findResponsesByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
         }
+        // id là Long nên nối thẳng vào SQL an toàn
+        return queryResponses(SELECT_RESPONSE + " WHERE p.id IN ("
+                + ids.stream().map(String::valueOf).collect(Collectors.joining(",")) + ")");
+    }
+
+    @Override
+    public Page<ProductDtos.ProductResponse> search(String q, String sku, Long categoryId, String status, Integer minStockLt, Pageable pageable) {
+        SqlWhere where = buildWhere(q, sku, categoryId, status, minStockLt);
+        adviseShape(q, sku, categoryId, status, minStockLt, pageable.getSort());
+        long total = count(where);
+        List<ProductDtos.ProductResponse> products = fetchPage(where, q, pageable, pageable.getPageSize());
         
-        if (status != null && !status.isBlank()) {
-            whereClause.append(" AND p.status = ?").append(paramIndex);
-            params.add(status);
-            paramIndex++;
+        return new PageImpl<>(products, pageable, total);
+    }
+
+    @Override
+    public Page<ProductDtos.ProductResponse> searchByIds(Collection<Long> ids, String sku, Long categoryId, String status, Integer minStockLt, Pageable pageable) {
+        if (ids.isEmpty()) {
+            return Page.empty(pageable);
         }
+        SqlWhere where = buildWhere(null, sku, categoryId, status, minStockLt);
+        // id là Long nên nối thẳng vào SQL an toàn, tránh hàng nghìn tham số bind
+        where.and("p.id IN (" + ids.stream().map(String::valueOf).collect(Collectors.joining(",")) + ")");
         
-        if (minStockLt != null) {
-            whereClause.append(" AND p.stock < ?").append(paramIndex);
-            params.add(minStockLt);
-            paramIndex++;
-        }
+        // Luôn đếm trong DB (dò theo khóa chính): index trong bộ nhớ có thể còn giữ id vừa bị xóa ở node khác
+        long total = count(where);
+        List<ProductDtos.ProductResponse> products = fetchPage(where, null, pageable, pageable.getPageSize());
         
-        String countSql = "SELECT COUNT(*) FROM products p" + whereClause;
-        var countQuery = em.createNativeQuery(countSql);
-        for (int i = 0; i < params.size(); i++) {
-            countQuery.setParameter(i + 1, params.get(i));
-        }
-        Long total = ((Number) countQuery.getSingleResult()).longValue();
+        return new PageImpl<>(products, pageable, total);
+    }
+
+    @Override
+    public Slice<ProductDtos.ProductResponse> searchSlice(String q, String sku, Long categoryId, String status, Integer minStockLt, Pageable pageable) {
+        SqlWhere where = buildWhere(q, sku, categoryId, status, minStockLt);
+        adviseShape(q, sku, categoryId, status, minStockLt, pageable.getSort());
+        // Lấy dư 1 dòng để biết còn trang sau hay không, không cần COUNT(*)
+        List<ProductDtos.ProductResponse> rows = fetchPage(where, q, pageable, pageable.getPageSize() + 1);
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        List<ProductDtos.ProductResponse> products = hasNext ? rows.subList(0, pageable.getPageSize()) : rows;
         
-        String dataSql = """
-            SELECT p.id, p.sku, p.name, p.price, p.stock, p.status, p.created_at, p.updated_at,
-                   c.id as cat_id, c.name as cat_name, c.status as cat_status, c.created_at as cat_created, c.updated_at as cat_updated
-            FROM products p
-            INNER JOIN categories c ON p.category_id = c.id
-        """ + whereClause + " ORDER BY " + buildOrderBy(pageable) + " LIMIT ?" + paramIndex + " OFFSET ?" + (paramIndex + 1);
+        return new SliceImpl<>(products, pageable, hasNext);
+    }
+
+    @Override
+    public long countSearch(String q, String sku, Long categoryId, String status, Integer minStockLt) {
+        return count(buildWhere(q, sku, categoryId, status, minStockLt));
+    }
+
+    @Override
+    public List<ProductDtos.ProductResponse> searchAfter(String q, String sku, Long categoryId, String status, Integer minStockLt,
+                                                        Sort.Order order, ProductCursor after, int limit) {
+        String column = "p." + keysetColumn(order.getProperty());
+        boolean asc = order.isAscending();
+        SqlWhere where = buildWhere(q, sku, categoryId, status, minStockLt);
+        adviseShape(q, sku, categoryId, status, minStockLt, Sort.by(order));
         
-        var dataQuery = em.createNativeQuery(dataSql);
-        for (int i = 0; i < params.size(); i++) {
-            dataQuery.setParameter(i + 1, params.get(i));
+        if (after != null) {
+            appendKeyset(where, column, asc, after);
         }
-        dataQuery.setParameter(paramIndex, pageable.getPageSize());
-        dataQuery.setParameter(paramIndex + 1, (int) pageable.getOffset());
         
-        @SuppressWarnings("unchecked")
-        List<Object[]> rows = dataQuery.getResultList();
-        List<Product> products = rows.stream().map(this::mapToProduct).toList();
+        String dir = asc ? " ASC" : " DESC";
+        String dataSql = SELECT_RESPONSE + where.jdbcClause()
+                + " ORDER BY " + column + dir + (column.equals("p.id") ? "" : ", p.id" + dir)
+                + " LIMIT ?";
         
-        return new PageImpl<>(products, pageable, total);
+        List<Object> params = new ArrayList<>(where.params());
+        params.add(limit);
+        return queryResponses(dataSql, params.toArray());
+    }
+
+    @Override
+    public List<ProductDtos.ProductResponse> findAllAfterId(Long afterId, int limit) {
+        return queryResponses(SELECT_RESPONSE + " WHERE p.id > ? ORDER BY p.id LIMIT ?",
+                afterId == null ? 0L : afterId, limit);
     }
 
     @Override
     public List<Product> findAll() {
         String sql = """
-            SELECT p.id, p.sku, p.name, p.price, p.stock, p.status, p.created_at, p.updated_at,
-                   c.id as cat_id, c.name as cat_name, c.status as cat_status, c.created_at as cat_created, c.updated_at as cat_updated
+            SELECT p.id, p.sku, p.name, p.price, p.stock, p.status, p.created_at, p.updated_at, p.category_id
             FROM products p
-            INNER JOIN categories c ON p.category_id = c.id
             ORDER BY p.id
         """;
         
@@ -270,48 +360,240 @@ public class ProductRepositoryImpl implements ProductRepository {
         return rows.stream().map(this::mapToProduct).toList();
     }
 
+    /**
+     * Ghi theo lô JDBC: mỗi chunk (catalog.product.batch-size) là một lần executeBatch.
+     * Với rewriteBatchedStatements=true, driver gộp thành INSERT nhiều dòng và trả id qua getGeneratedKeys,
+     * không còn SELECT LAST_INSERT_ID() sau từng dòng.
+     */
     @Override
     @Transactional
     public void saveAll(List<Product> products) {
-        for (Product product : products) {
-            if (product.getId() == null) {
-                // Insert
-                String sql = """
-                    INSERT INTO products (sku, name, category_id, price, stock, status, created_at, updated_at)
-                    VALUES (?, ?, ?, ?, ?, ?, ?, ?)
-                """;
-                em.createNativeQuery(sql)
-                    .setParameter(1, product.getSku())
-                    .setParameter(2, product.getName())
-                    .setParameter(3, product.getCategory().getId())
-                    .setParameter(4, product.getPrice())
-                    .setParameter(5, product.getStock())
-                    .setParameter(6, product.getStatus().name())
-                    .setParameter(7, product.getCreatedAt() != null ? product.getCreatedAt() : LocalDateTime.now())
-                    .setParameter(8, product.getUpdatedAt())
-                    .executeUpdate();
-                
-                Long id = ((Number) em.createNativeQuery("SELECT LAST_INSERT_ID()").getSingleResult()).longValue();
-                product.setId(id);
+        List<Product> inserts = products.stream().filter(p -> p.getId() == null).toList();
+        List<Product> updates = products.stream().filter(p -> p.getId() != null).toList();
+        
+        em.unwrap(Session.class).doWork(conn -> {
+            for (int from = 0; from < inserts.size(); from += batchSize) {
+                batchInsert(conn, inserts.subList(from, Math.min(from + batchSize, inserts.size())));
+            }
+            for (int from = 0; from < updates.size(); from += batchSize) {
+                batchUpdate(conn, updates.subList(from, Math.min(from + batchSize, updates.size())));
+            }
+        });
+        if (!products.isEmpty()) {
+            tableVersions.bump("products");
+        }
+    }
+
+    /**
+     * Chuyển các sản phẩm ACTIVE của danh mục sang INACTIVE bằng UPDATE theo từng chunk id,
+     * trả về id đã đổi để xóa cache. Mỗi chunk luôn là một transaction ngắn riêng (REQUIRES_NEW),
+     * kể cả khi được gọi trong transaction khác, để khóa FOR UPDATE được nhả sau từng chunk.
+     */
+    @Override
+    public List<Long> deactivateActiveByCategoryId(Long categoryId, LocalDateTime updatedAt) {
+        List<Long> affected = new ArrayList<>();
+        List<Long> chunk;
+        do {
+            long afterId = affected.isEmpty() ? 0L : affected.get(affected.size() - 1);
+            chunk = chunkTx.execute(status -> {
+                @SuppressWarnings("unchecked")
+                List<Number> rows = em.createNativeQuery("""
+                    SELECT id FROM products
+                    WHERE category_id = ? AND status = 'ACTIVE' AND id > ?
+                    ORDER BY id
+                    LIMIT ?
+                    FOR UPDATE
+                """)
+                    .setParameter(1, categoryId)
+                    .setParameter(2, afterId)
+                    .setParameter(3, batchSize)
+                    .getResultList();
+                List<Long> ids = rows.stream().map(Number::longValue).toList();
+                if (!ids.isEmpty()) {
+                    em.createNativeQuery("UPDATE products SET status = 'INACTIVE', updated_at = ? WHERE id IN ("
+                            + ids.stream().map(String::valueOf).collect(Collectors.joining(",")) + ")")
+                        .setParameter(1, updatedAt)
+                        .executeUpdate();
+                    tableVersions.bump("products");
+                }
+                return ids;
+            });
+            affected.addAll(chunk);
+        } while (chunk.size() == batchSize);
+        return affected;
+    }
+
+    private void batchInsert(Connection conn, List<Product> chunk) throws SQLException {
+        String sql = """
+            INSERT INTO products (sku, name, category_id, price, stock, status, created_at, updated_at, name_folded)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (Product product : chunk) {
+                ps.setString(1, product.getSku());
+                ps.setString(2, product.getName());
+                ps.setLong(3, product.getCategory().getId());
+                ps.setBigDecimal(4, product.getPrice());
+                ps.setInt(5, product.getStock());
+                ps.setString(6, product.getStatus().name());
+                ps.setObject(7, product.getCreatedAt() != null ? product.getCreatedAt() : LocalDateTime.now());
+                setDateTime(ps, 8, product.getUpdatedAt());
+                ps.setString(9, TextNormalizer.fold(product.getName()));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                for (Product product : chunk) {
+                    if (!keys.next()) {
+                        throw new SQLException("Thiếu generated key cho SKU " + product.getSku());
+                    }
+                    product.setId(keys.getLong(1));
+                }
+            }
+        }
+    }
+
+    private void batchUpdate(Connection conn, List<Product> chunk) throws SQLException {
+        String sql = """
+            UPDATE products
+            SET sku = ?, name = ?, category_id = ?, price = ?, stock = ?, status = ?, updated_at = ?, name_folded = ?
+            WHERE id = ?
+        """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (Product product : chunk) {
+                ps.setString(1, product.getSku());
+                ps.setString(2, product.getName());
+                ps.setLong(3, product.getCategory().getId());
+                ps.setBigDecimal(4, product.getPrice());
+                ps.setInt(5, product.getStock());
+                ps.setString(6, product.getStatus().name());
+                setDateTime(ps, 7, product.getUpdatedAt());
+                ps.setString(8, TextNormalizer.fold(product.getName()));
+                ps.setLong(9, product.getId());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static void setDateTime(PreparedStatement ps, int index, LocalDateTime value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.TIMESTAMP);
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+
+    private long count(SqlWhere where) {
+        Long total = jdbc.queryForObject("SELECT COUNT(*) FROM products p" + where.jdbcClause(), Long.class,
+                where.params().toArray());
+        return total == null ? 0 : total;
+    }
+
+    private List<ProductDtos.ProductResponse> fetchPage(SqlWhere where, String q, Pageable pageable, int limit) {
+        String fullText = TextNormalizer.fullTextQuery(TextNormalizer.fold(q));
+        boolean byRelevance = fullText != null && isRelevanceSort(pageable);
+        List<Object> params = new ArrayList<>(where.params());
+        String orderBy = buildOrderBy(pageable);
+        if (byRelevance) {
+            orderBy = "MATCH(p.name_folded) AGAINST (? IN BOOLEAN MODE) DESC, p.id DESC";
+            params.add(fullText);
+        }
+        params.add(limit);
+        params.add(pageable.getOffset());
+        
+        String dataSql = SELECT_RESPONSE + where.jdbcClause() + " ORDER BY " + orderBy + " LIMIT ? OFFSET ?";
+        return queryResponses(dataSql, params.toArray());
+    }
+
+    private SqlWhere buildWhere(String q, String sku, Long categoryId, String status, Integer minStockLt) {
+        SqlWhere where = new SqlWhere();
+        
+        if (q != null && !q.isBlank()) {
+            FoldedNameFilter.apply(where, "p.", q, hasUnfoldedNames());
+        }
+        if (sku != null && !sku.isBlank()) {
+            where.and("p.sku_normalized = LOWER(?)", sku.trim());
+        }
+        if (categoryId != null) {
+            where.and("p.category_id = ?", categoryId);
+        }
+        if (status != null && !status.isBlank()) {
+            where.and("p.status = ?", status);
+        }
+        if (minStockLt != null) {
+            where.and("p.stock < ?", minStockLt);
+        }
+        return where;
+    }
+
+    /** Còn dòng chưa được FoldedNameBackfillJob điền name_folded; hết rồi thì thôi kiểm tra (dòng mới luôn có). */
+    private boolean hasUnfoldedNames() {
+        if (namesFolded) {
+            return false;
+        }
+        Boolean pending = jdbc.queryForObject("SELECT EXISTS(SELECT 1 FROM products WHERE name_folded IS NULL)", Boolean.class);
+        namesFolded = !Boolean.TRUE.equals(pending);
+        return !namesFolded;
+    }
+
+    private void adviseShape(String q, String sku, Long categoryId, String status, Integer minStockLt, Sort sort) {
+        if (!indexAdvisor.isEnabled()) {
+            return;
+        }
+        List<String> equality = new ArrayList<>();
+        if (categoryId != null) equality.add("category_id");
+        if (sku != null && !sku.isBlank()) equality.add("sku_normalized");
+        if (status != null && !status.isBlank()) equality.add("status");
+        boolean fullText = q != null && !q.isBlank();
+        List<String> sortColumns = sort.isSorted()
+                ? sort.stream().map(o -> mapPropertyToColumn(o.getProperty())).toList()
+                : List.of("id");
+        indexAdvisor.record(new ProductIndexAdvisor.QueryShape(
+                equality, minStockLt != null ? "stock" : null, fullText, sortColumns));
+    }
+
+    private boolean isRelevanceSort(Pageable pageable) {
+        Sort.Order first = pageable.getSort().stream().findFirst().orElse(null);
+        return first != null && first.getProperty().equals("relevance");
+    }
+
+    /**
+     * Điều kiện "sau con trỏ" cho ORDER BY (column, id).
+     * MySQL xếp NULL đầu tiên khi ASC và cuối cùng khi DESC, nên cột nullable (updated_at) cần xử lý riêng.
+     */
+    private void appendKeyset(SqlWhere where, String column, boolean asc, ProductCursor after) {
+        String op = asc ? ">" : "<";
+        if (column.equals("p.id")) {
+            where.and("p.id " + op + " ?", after.id());
+            return;
+        }
+        boolean nullable = column.equals("p.updated_at");
+        if (after.value() == null) {
+            if (asc) {
+                where.and("((" + column + " IS NULL AND p.id > ?) OR " + column + " IS NOT NULL)", after.id());
             } else {
-                // Update
-                String sql = """
-                    UPDATE products
-                    SET sku = ?, name = ?, category_id = ?, price = ?, stock = ?, status = ?, updated_at = ?
-                    WHERE id = ?
-                """;
-                em.createNativeQuery(sql)
-                    .setParameter(1, product.getSku())
-                    .setParameter(2, product.getName())
-                    .setParameter(3, product.getCategory().getId())
-                    .setParameter(4, product.getPrice())
-                    .setParameter(5, product.getStock())
-                    .setParameter(6, product.getStatus().name())
-                    .setParameter(7, product.getUpdatedAt())
-                    .setParameter(8, product.getId())
-                    .executeUpdate();
+                where.and("(" + column + " IS NULL AND p.id < ?)", after.id());
             }
+            return;
         }
+        String seek = "(" + column + " " + op + " ? OR (" + column + " = ? AND p.id " + op + " ?)";
+        if (nullable && !asc) {
+            seek += " OR " + column + " IS NULL";
+        }
+        where.and(seek + ")", after.value(), after.value(), after.id());
+    }
+
+    private String keysetColumn(String property) {
+        return switch (property) {
+            case "id", "sku", "name", "price", "stock", "status" -> property;
+            case "createdAt" -> "created_at";
+            case "updatedAt" -> "updated_at";
+            case "categoryId" -> "category_id";
+            case "relevance" -> throw new ValidationException("Phân trang bằng cursor không hỗ trợ sắp xếp theo độ liên quan");
+            default -> throw new ValidationException("Không hỗ trợ sắp xếp theo trường: " + property);
+        };
     }
 
     private String buildOrderBy(Pageable pageable) {
@@ -333,10 +615,51 @@ public class ProductRepositoryImpl implements ProductRepository {
             case "createdAt" -> "created_at";
             case "updatedAt" -> "updated_at";
             case "categoryId" -> "category_id";
+            case "relevance" -> "id"; // không có từ khóa thì không có điểm liên quan
             default -> property; // id, sku, name, price, stock, status remain the same
         };
     }
 
+    /**
+     * Chạy truy vấn SELECT_RESPONSE với tên danh mục lấy từ snapshot của CategoryDictionary chụp trước truy vấn,
+     * nên mỗi dòng chỉ tạo một record. Danh mục chưa có trong snapshot (vừa tạo ở node khác) được tra sau khi
+     * ResultSet đã đóng, để không nạp từ điển trong lúc đang giữ kết nối đọc dở.
+     */
+    private List<ProductDtos.ProductResponse> queryResponses(String sql, Object... params) {
+        Map<Long, Category> categories = categoryDictionary.snapshot();
+        List<Integer> unresolved = new ArrayList<>();
+        List<ProductDtos.ProductResponse> rows = jdbc.query(sql,
+                (rs, rowNum) -> mapToResponse(rs, rowNum, categories, unresolved), params);
+        for (int i : unresolved) {
+            ProductDtos.ProductResponse r = rows.get(i);
+            rows.set(i, new ProductDtos.ProductResponse(r.id(), r.sku(), r.name(), r.categoryId(),
+                    categoryDictionary.name(r.categoryId()), r.price(), r.stock(), r.status(), r.createdAt(), r.updatedAt()));
+        }
+        return rows;
+    }
+
+    /** Danh mục không có trong categories thì để categoryName null và ghi rowNum vào unresolved. */
+    private static ProductDtos.ProductResponse mapToResponse(ResultSet rs, int rowNum, Map<Long, Category> categories,
+                                                             List<Integer> unresolved) throws SQLException {
+        long categoryId = rs.getLong(4);
+        Category category = categories.get(categoryId);
+        if (category == null) {
+            unresolved.add(rowNum);
+        }
+        return new ProductDtos.ProductResponse(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getString(3),
+                categoryId,
+                category != null ? category.getName() : null,
+                rs.getBigDecimal(5),
+                rs.getInt(6),
+                rs.getString(7),
+                rs.getObject(8, LocalDateTime.class),
+                rs.getObject(9, LocalDateTime.class)
+        );
+    }
+
     private Product mapToProduct(Object[] row) {
         Product product = new Product();
         product.setId(((Number) row[0]).longValue());
@@ -353,20 +676,10 @@ public class ProductRepositoryImpl implements ProductRepository {
             product.setUpdatedAt(((java.sql.Timestamp) row[7]).toLocalDateTime());
         }
         
-        Category category = new Category();
-        category.setId(((Number) row[8]).longValue());
-        category.setName((String) row[9]);
-        category.setStatus(Category.CategoryStatus.valueOf((String) row[10]));
-        
-        if (row[11] != null) {
-            category.setCreatedAt(((java.sql.Timestamp) row[11]).toLocalDateTime());
-        }
-        if (row[12] != null) {
-            category.setUpdatedAt(((java.sql.Timestamp) row[12]).toLocalDateTime());
-        }
+        Category category = categoryDictionary.get(((Number) row[8]).longValue());
         
         product.setCategory(category);
         
         return product;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,273 @@
+package com.webmini.miniweb.catalog.product.service;
+
+import com.webmini.miniweb.catalog.category.entity.Category;
+import com.webmini.miniweb.catalog.category.repo.CategoryDictionary;
+import com.webmini.miniweb.catalog.category.repo.CategoryRepository;
+import com.webmini.miniweb.catalog.product.dto.ProductDtos;
+import com.webmini.miniweb.catalog.product.entity.Product;
+import com.webmini.miniweb.catalog.product.repo.ProductRepository;
+import com.webmini.miniweb.common.CacheWriteThrough;
+import com.webmini.miniweb.common.CsvReader;
+import com.webmini.miniweb.common.TaggedPageCache;
+import com.webmini.miniweb.common.ValidationException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Import sản phẩm từ CSV: đọc từng bản ghi, kiểm tra song song theo chunk với cùng quy tắc của
+ * ProductService, tra danh mục qua một map nạp sẵn, và ghi mỗi chunk bằng một saveAll (JDBC batch)
+ * trong một transaction riêng. Header bắt buộc: sku,name,category(Id),price,stock[,status].
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final ProductRepository repo;
+    private final CategoryRepository categories;
+    private final ProductValidator validator;
+    private final ProductSearchIndex searchIndex;
+    private final CategoryDictionary categoryDictionary;
+    private final CacheWriteThrough cacheWriter;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${catalog.product.batch-size:1000}")
+    private int batchSize;
+
+    public ProductDtos.ProductImportResult importCsv(Reader reader) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        Map<String, Integer> columns = readHeader(csv.next());
+        Map<String, Category> categoryLookup = loadCategories();
+
+        ImportState state = new ImportState();
+        List<CsvRow> chunk = new ArrayList<>(batchSize);
+        while (true) {
+            long line = csv.line();
+            List<String> fields = csv.next();
+            if (fields == null) {
+                break;
+            }
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            chunk.add(new CsvRow(line, fields));
+            if (chunk.size() == batchSize) {
+                processChunk(chunk, columns, categoryLookup, state);
+                chunk = new ArrayList<>(batchSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            processChunk(chunk, columns, categoryLookup, state);
+        }
+
+        log.info("📦 Import CSV: {} dòng, {} thành công, {} lỗi", state.total, state.imported, state.failed);
+        return new ProductDtos.ProductImportResult(state.total, state.imported, state.failed, state.errors);
+    }
+
+    private void processChunk(List<CsvRow> chunk, Map<String, Integer> columns,
+                              Map<String, Category> categoryLookup, ImportState state) {
+        state.total += chunk.size();
+
+        // Bước kiểm tra không có trạng thái dùng chung nên chạy song song được
+        List<ParsedRow> parsed = chunk.parallelStream()
+                .map(row -> parse(row, columns, categoryLookup))
+                .toList();
+
+        // Trùng SKU chỉ kiểm tra trong chunk để bộ nhớ không tăng theo kích thước file: trùng với chunk trước
+        // (đã commit) bị bắt bởi findExistingSkusIgnoreCase, ghi đồng thời thì bởi UNIQUE uq_products_sku_normalized
+        Set<String> seenSkus = new HashSet<>();
+        List<ParsedRow> valid = new ArrayList<>();
+        for (ParsedRow row : parsed) {
+            if (row.error() != null) {
+                state.fail(row.line(), row.sku(), row.error());
+            } else if (!seenSkus.add(row.sku().toLowerCase(Locale.ROOT))) {
+                state.fail(row.line(), row.sku(), "Mã SKU '" + row.sku() + "' bị trùng trong file");
+            } else {
+                valid.add(row);
+            }
+        }
+
+        Set<String> existing = repo.findExistingSkusIgnoreCase(valid.stream().map(ParsedRow::sku).toList());
+        List<Product> toInsert = new ArrayList<>(valid.size());
+        List<ParsedRow> inserted = new ArrayList<>(valid.size());
+        for (ParsedRow row : valid) {
+            if (existing.contains(row.sku().toLowerCase(Locale.ROOT))) {
+                state.fail(row.line(), row.sku(), "Mã SKU '" + row.sku() + "' đã tồn tại");
+            } else {
+                toInsert.add(row.product());
+                inserted.add(row);
+            }
+        }
+        if (toInsert.isEmpty()) {
+            return;
+        }
+
+        try {
+            Set<Long> activated = new TransactionTemplate(transactionManager).execute(status -> {
+                repo.saveAll(toInsert);
+                Set<Long> ids = activateCategories(toInsert, state.activatedCategories);
+                searchIndex.onSavedAll(toInsert);
+                cacheWriter.clearMissing("products", toInsert.stream().map(Product::getId).toList());
+                cacheWriter.invalidatePages(TaggedPageCache.PRODUCT_PAGES, ProductPageTags.forWrite(
+                        toInsert.stream().map(p -> p.getCategory().getId()).toArray(Long[]::new)));
+                return ids;
+            });
+            // Chỉ ghi nhận sau commit: chunk rollback thì danh mục vẫn INACTIVE và chunk sau thử lại
+            state.activatedCategories.addAll(activated);
+            state.imported += toInsert.size();
+        } catch (RuntimeException e) {
+            log.warn("❌ Lỗi khi ghi chunk import: {}", e.getMessage());
+            inserted.forEach(row -> state.fail(row.line(), row.sku(), "Không ghi được chunk: " + e.getMessage()));
+        }
+    }
+
+    private ParsedRow parse(CsvRow row, Map<String, Integer> columns, Map<String, Category> categoryLookup) {
+        String rawSku = row.get(columns, "sku");
+        try {
+            String sku = validator.validateAndTrimSku(rawSku);
+            String name = validator.validateAndTrimName(row.get(columns, "name"));
+            BigDecimal price = parsePrice(row.get(columns, "price"));
+            validator.validatePrice(price);
+            Integer stock = parseStock(row.get(columns, "stock"));
+            validator.validateStock(stock);
+            String status = row.get(columns, "status");
+            status = status == null || status.isBlank() ? "ACTIVE" : status.trim().toUpperCase();
+            validator.validateStatus(status);
+
+            String categoryKey = row.get(columns, "category");
+            Category category = categoryKey == null ? null : categoryLookup.get(categoryKey.trim().toLowerCase());
+            if (category == null) {
+                throw new ValidationException("Không tìm thấy danh mục: " + categoryKey);
+            }
+
+            Product p = new Product();
+            p.setSku(sku);
+            p.setName(name);
+            p.setCategory(category);
+            p.setPrice(price);
+            p.setStock(stock);
+            p.setStatus(Product.ProductStatus.valueOf(status));
+            return new ParsedRow(row.line(), sku, p, null);
+        } catch (ValidationException e) {
+            return new ParsedRow(row.line(), rawSku, null, e.getMessage());
+        }
+    }
+
+    /**
+     * Giống ProductService.create: thêm sản phẩm ACTIVE vào danh mục INACTIVE thì kích hoạt danh mục.
+     * Không sửa các Category dùng chung trong categoryLookup (chunk có thể rollback): đọc lại danh mục trong
+     * transaction của chunk và trả về id các danh mục đã kích hoạt để ghi nhận sau commit.
+     */
+    private Set<Long> activateCategories(List<Product> products, Set<Long> alreadyActivated) {
+        Set<Long> activated = new HashSet<>();
+        for (Product p : products) {
+            Category lookedUp = p.getCategory();
+            if (p.getStatus() != Product.ProductStatus.ACTIVE
+                    || lookedUp.getStatus() != Category.CategoryStatus.INACTIVE
+                    || alreadyActivated.contains(lookedUp.getId())
+                    || !activated.add(lookedUp.getId())) {
+                continue;
+            }
+            Category cat = categories.findById(lookedUp.getId()).orElse(null);
+            if (cat != null && cat.getStatus() == Category.CategoryStatus.INACTIVE) {
+                cat.setStatus(Category.CategoryStatus.ACTIVE);
+                cat.setUpdatedAt(java.time.LocalDateTime.now());
+                categories.save(cat);
+                categoryDictionary.onSaved(cat);
+                cacheWriter.evict("categories", cat.getId());
+                cacheWriter.invalidatePages(TaggedPageCache.CATEGORY_PAGES, TaggedPageCache.tableTag("categories"));
+            }
+        }
+        return activated;
+    }
+
+    /** Tra danh mục theo id hoặc theo tên (không phân biệt hoa thường). */
+    private Map<String, Category> loadCategories() {
+        Map<String, Category> lookup = new HashMap<>();
+        for (Category c : categories.findAll()) {
+            lookup.put(String.valueOf(c.getId()), c);
+            lookup.putIfAbsent(c.getName().trim().toLowerCase(), c);
+        }
+        return lookup;
+    }
+
+    private Map<String, Integer> readHeader(List<String> header) {
+        if (header == null) {
+            throw new ValidationException("File CSV rỗng");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).replace("\uFEFF", "").trim().toLowerCase();
+            columns.put(name.equals("categoryid") ? "category" : name, i);
+        }
+        for (String required : List.of("sku", "name", "category", "price", "stock")) {
+            if (!columns.containsKey(required)) {
+                throw new ValidationException("Thiếu cột bắt buộc trong header CSV: " + required);
+            }
+        }
+        return columns;
+    }
+
+    private BigDecimal parsePrice(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Giá bán không hợp lệ: " + value);
+        }
+    }
+
+    private Integer parseStock(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Tồn kho không hợp lệ: " + value);
+        }
+    }
+
+    private record CsvRow(long line, List<String> fields) {
+        String get(Map<String, Integer> columns, String column) {
+            Integer i = columns.get(column);
+            return i == null || i >= fields.size() ? null : fields.get(i);
+        }
+    }
+
+    private record ParsedRow(long line, String sku, Product product, String error) {}
+
+    private static final class ImportState {
+        final Set<Long> activatedCategories = new HashSet<>();
+        final List<ProductDtos.ProductImportError> errors = new ArrayList<>();
+        long total;
+        long imported;
+        long failed;
+
+        void fail(long line, String sku, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ProductDtos.ProductImportError(line, sku, message));
+            }
+        }
+    }
+}
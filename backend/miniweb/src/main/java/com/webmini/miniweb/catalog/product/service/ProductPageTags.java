@@ -0,0 +1,32 @@
+package com.webmini.miniweb.catalog.product.service;
+
+import com.webmini.miniweb.common.TaggedPageCache;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Tag của các trang tìm kiếm sản phẩm (TaggedPageCache.PRODUCT_PAGES): trang không lọc danh mục gắn tag cả bảng,
+ * trang lọc theo danh mục gắn tag của danh mục đó. Ghi một sản phẩm thì vô hiệu hóa tag bảng và tag danh mục của nó.
+ */
+public final class ProductPageTags {
+
+    private ProductPageTags() {}
+
+    public static String forSearch(Long categoryId) {
+        return categoryId != null ? category(categoryId) : TaggedPageCache.tableTag("products");
+    }
+
+    /** Các tag cần vô hiệu hóa khi sản phẩm thuộc (hoặc vừa rời khỏi) các danh mục này thay đổi. */
+    public static String[] forWrite(Long... categoryIds) {
+        return Stream.concat(
+                        Stream.of(TaggedPageCache.tableTag("products")),
+                        Arrays.stream(categoryIds).filter(Objects::nonNull).distinct().map(ProductPageTags::category))
+                .toArray(String[]::new);
+    }
+
+    private static String category(Long categoryId) {
+        return TaggedPageCache.tag("products", "category_id", categoryId);
+    }
+}
@@ -0,0 +1,294 @@
+package com.webmini.miniweb.catalog.product.service;
+
+import com.webmini.miniweb.catalog.product.dto.ProductDtos;
+import com.webmini.miniweb.catalog.product.entity.Product;
+import com.webmini.miniweb.catalog.product.repo.ProductRepository;
+import com.webmini.miniweb.common.TextNormalizer;
+import com.webmini.miniweb.common.TwoLevelCacheManager;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index trong bộ nhớ cho tên (không dấu) và SKU sản phẩm (bật bằng catalog.search.index.enabled=true).
+ * Mỗi bigram ký tự của tên trỏ tới một RoaringBitmap chứa id sản phẩm, nên tìm "chuỗi con" giống LIKE '%q%'
+ * chỉ là phép giao các bitmap rồi kiểm tra lại chuỗi gốc. MySQL chỉ còn phải lấy dữ liệu theo id.
+ * q chỉ so với tên, đúng trường mà đường SQL (FULLTEXT trên name_folded) lọc, để cùng một q cho cùng kết quả
+ * dù đi đường nào; SKU được index riêng (theo sku_normalized) và dùng cho bộ lọc sku.
+ * <p>
+ * Mọi thay đổi (ở node này khi commit, ở node khác qua kênh hủy L1 của TwoLevelCacheManager) chỉ mang id:
+ * index đọc lại các dòng đó từ DB rồi áp dụng, tuần tự dưới một khóa, nên lần áp dụng sau luôn thấy dữ liệu
+ * mới hơn lần trước. Thay đổi đến trong lúc dựng index được gom lại và đọc lại sau khi dựng xong.
+ * Message bị lỡ khi Redis gián đoạn thì chỉ được sửa ở lần khởi động sau. Doc id là int: gặp id vượt
+ * Integer.MAX_VALUE thì index tự tắt và mọi truy vấn đi đường SQL.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductSearchIndex {
+
+    private static final int BUILD_CHUNK = 5000;
+    /** Tên dùng trên kênh hủy L1 của TwoLevelCacheManager. */
+    private static final String CHANNEL_NAME = "product-search-index";
+
+    private final ProductRepository repo;
+    private final TwoLevelCacheManager cacheManager;
+
+    @Value("${catalog.search.index.enabled:false}")
+    private boolean enabled;
+
+    /** Quá ngưỡng này thì trả về null để dùng đường FULLTEXT trong SQL. */
+    @Value("${catalog.search.index.max-candidates:10000}")
+    private int maxCandidates;
+
+    private record Doc(String text, String sku) {}
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, RoaringBitmap> postings = new HashMap<>();
+    private final Map<Integer, Doc> documents = new HashMap<>();
+    private final Map<String, Integer> skus = new HashMap<>();
+
+    /** Giữ trong suốt đọc DB + áp dụng của một lần refresh; pending chỉ được đọc/ghi khi giữ khóa này. */
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final Set<Long> pending = new LinkedHashSet<>();
+    private volatile boolean ready;
+    private volatile boolean disabled;
+
+    @PostConstruct
+    void subscribe() {
+        if (enabled) {
+            cacheManager.onRemoteEvict(CHANNEL_NAME, ids -> refresh(ids.stream().map(Long::valueOf).toList()));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Long lastId = 0L;
+        List<ProductDtos.ProductResponse> chunk;
+        do {
+            chunk = repo.findAllAfterId(lastId, BUILD_CHUNK);
+            if (!apply(chunk, List.of())) {
+                return;
+            }
+            if (!chunk.isEmpty()) lastId = chunk.get(chunk.size() - 1).id();
+        } while (chunk.size() == BUILD_CHUNK);
+
+        // Các chunk trên có thể đã đọc dòng trước một lần ghi đến trong lúc dựng: đọc lại những id đó
+        refreshLock.lock();
+        try {
+            List<Long> changed = List.copyOf(pending);
+            pending.clear();
+            if (!reload(changed)) {
+                return;
+            }
+            ready = true;
+        } finally {
+            refreshLock.unlock();
+        }
+        log.info("🔎 Đã dựng search index: {} sản phẩm, {} bigram, {} ms",
+                documents.size(), postings.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return enabled && ready && !disabled;
+    }
+
+    /**
+     * Trả về id các sản phẩm có tên chứa mọi từ trong q (không phân biệt hoa thường, không dấu) và có đúng SKU
+     * sku (nếu có), hoặc null nếu index không dùng được cho truy vấn này. Kết quả đã áp dụng bộ lọc sku.
+     */
+    public List<Long> find(String q, String sku) {
+        boolean hasQuery = q != null && !q.isBlank();
+        boolean hasSku = sku != null && !sku.isBlank();
+        if (!isReady() || (!hasQuery && !hasSku)) {
+            return null;
+        }
+        String[] words = hasQuery ? TextNormalizer.fold(q).split(" ") : new String[0];
+
+        lock.readLock().lock();
+        try {
+            if (hasSku) {
+                // SKU là duy nhất: tối đa một ứng viên, từ ngắn cũng chỉ cần kiểm tra chuỗi
+                Integer docId = skus.get(sku.trim().toLowerCase(Locale.ROOT));
+                return docId != null && containsAll(documents.get(docId), words) ? List.of((long) docId) : List.of();
+            }
+            for (String word : words) {
+                // Đếm theo code point như TextNormalizer.fullTextQuery
+                if (word.codePointCount(0, word.length()) < 2) {
+                    return null;
+                }
+            }
+            RoaringBitmap candidates = null;
+            for (String word : words) {
+                int[] codePoints = word.codePoints().toArray();
+                for (int i = 0; i + 1 < codePoints.length; i++) {
+                    RoaringBitmap posting = postings.get(bigram(codePoints, i));
+                    if (posting == null) {
+                        return List.of();
+                    }
+                    candidates = candidates == null ? posting.clone() : RoaringBitmap.and(candidates, posting);
+                }
+            }
+            if (candidates == null || candidates.getCardinality() > maxCandidates) {
+                return candidates == null ? List.of() : null;
+            }
+
+            List<Long> ids = new ArrayList<>(candidates.getCardinality());
+            candidates.forEach((int docId) -> {
+                if (containsAll(documents.get(docId), words)) {
+                    ids.add((long) docId);
+                }
+            });
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Gọi sau khi tạo/sửa sản phẩm; nếu đang trong transaction thì chỉ áp dụng khi commit. */
+    public void onSaved(Product product) {
+        onChanged(List.of(product.getId()));
+    }
+
+    /** Như onSaved cho cả một lô (import): một lần đọc DB và một message cho cả lô. */
+    public void onSavedAll(Collection<Product> products) {
+        onChanged(products.stream().map(Product::getId).toList());
+    }
+
+    public void onDeleted(Long id) {
+        onChanged(List.of(id));
+    }
+
+    private void onChanged(List<Long> ids) {
+        if (!enabled || disabled || ids.isEmpty()) {
+            return;
+        }
+        afterCommit(() -> {
+            refresh(ids);
+            cacheManager.broadcastEvict(CHANNEL_NAME, ids.stream().map(String::valueOf).toArray(String[]::new));
+        });
+    }
+
+    /** Đọc lại các id từ DB và cập nhật index; trước khi dựng xong thì chỉ ghi nhận để đọc lại sau. */
+    private void refresh(List<Long> ids) {
+        refreshLock.lock();
+        try {
+            if (!ready) {
+                pending.addAll(ids);
+                return;
+            }
+            reload(ids);
+        } catch (RuntimeException e) {
+            // Không biết index còn đúng không: tắt để mọi truy vấn đi đường SQL
+            log.warn("⚠️ Không cập nhật được search index cho {} sản phẩm, tắt index: {}", ids.size(), e.getMessage());
+            disabled = true;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private boolean reload(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return true;
+        }
+        return apply(repo.findResponsesByIds(ids), ids);
+    }
+
+    /** Index lại các sản phẩm found, bỏ các id trong ids không còn tồn tại; false nếu index phải tắt. */
+    private boolean apply(List<ProductDtos.ProductResponse> found, List<Long> ids) {
+        if (found.stream().anyMatch(p -> p.id() > Integer.MAX_VALUE)
+                || ids.stream().anyMatch(id -> id > Integer.MAX_VALUE)) {
+            log.warn("⚠️ Có id sản phẩm vượt Integer.MAX_VALUE, tắt search index");
+            disabled = true;
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            ids.forEach(id -> unindex(id.intValue()));
+            for (ProductDtos.ProductResponse p : found) {
+                int docId = p.id().intValue();
+                unindex(docId);
+                index(docId, new Doc(TextNormalizer.fold(p.name()), p.sku().toLowerCase(Locale.ROOT)));
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(int docId, Doc doc) {
+        documents.put(docId, doc);
+        skus.put(doc.sku(), docId);
+        int[] codePoints = doc.text().codePoints().toArray();
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            postings.computeIfAbsent(bigram(codePoints, i), k -> new RoaringBitmap()).add(docId);
+        }
+    }
+
+    private void unindex(int docId) {
+        Doc old = documents.remove(docId);
+        if (old == null) {
+            return;
+        }
+        skus.remove(old.sku(), docId);
+        int[] codePoints = old.text().codePoints().toArray();
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            long key = bigram(codePoints, i);
+            RoaringBitmap posting = postings.get(key);
+            if (posting != null) {
+                posting.remove(docId);
+                if (posting.isEmpty()) postings.remove(key);
+            }
+        }
+    }
+
+    private static boolean containsAll(Doc doc, String[] words) {
+        if (doc == null) {
+            return false;
+        }
+        for (String word : words) {
+            if (!doc.text().contains(word)) return false;
+        }
+        return true;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static long bigram(int[] codePoints, int i) {
+        return ((long) codePoints[i] << 32) | codePoints[i + 1];
+    }
+}
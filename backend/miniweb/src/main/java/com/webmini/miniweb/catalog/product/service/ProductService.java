@@ -1,24 +1,26 @@
 package com.webmini.miniweb.catalog.product.service;
 
 import com.webmini.miniweb.catalog.category.entity.Category;
+import com.webmini.miniweb.catalog.category.repo.CategoryDictionary;
 import com.webmini.miniweb.catalog.category.repo.CategoryRepository;
 import com.webmini.miniweb.catalog.product.dto.*;
 import com.webmini.miniweb.catalog.product.entity.Product;
 import com.webmini.miniweb.catalog.product.mapper.ProductMapper;
+import com.webmini.miniweb.catalog.product.repo.ProductCursor;
 import com.webmini.miniweb.catalog.product.repo.ProductRepository;
 import com.webmini.miniweb.common.*;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.Cache;
-import org.springframework.cache.CacheManager;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
-import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -26,17 +28,27 @@ import java.util.LinkedHashMap;
 public class ProductService {
     private final ProductRepository repo;
     private final CategoryRepository categories;
+    private final CategoryDictionary categoryDictionary;
     private final ProductMapper mapper;
-    private final ObjectMapper objectMapper;
-    private final CacheManager cacheManager;
+    private final ReadThroughCache readThrough;
+    private final BatchCacheLoader batchCache;
+    private final CacheWriteThrough cacheWriter;
+    private final SearchCountCache searchCounts;
+    private final ProductSearchIndex searchIndex;
+    private final ProductValidator validator;
+    private final TaggedPageCache pageCache;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${catalog.product.max-batch-ids:500}")
+    private int maxBatchSize;
 
     @Transactional
     public ProductDtos.ProductResponse create(ProductDtos.ProductCreateRequest req) {
-        String trimmedSku = validateAndTrimSku(req.sku());
-        String trimmedName = validateAndTrimName(req.name());
-        validatePrice(req.price());
-        validateStock(req.stock());
-        validateStatus(req.status());
+        String trimmedSku = validator.validateAndTrimSku(req.sku());
+        String trimmedName = validator.validateAndTrimName(req.name());
+        validator.validatePrice(req.price());
+        validator.validateStock(req.stock());
+        validator.validateStatus(req.status());
 
         if (repo.existsBySkuIgnoreCase(trimmedSku)) {
             throw new ConflictException("Mã SKU '" + trimmedSku + "' đã tồn tại");
@@ -50,60 +62,58 @@ public class ProductService {
         e.setUpdatedAt(null);
 
         Product saved = repo.save(e);
+        searchIndex.onSaved(saved);
 
         if (saved.getStatus() == Product.ProductStatus.ACTIVE &&
                 cat.getStatus() == Category.CategoryStatus.INACTIVE) {
             activateCategory(cat);
         }
 
-        return mapper.toDto(saved);
+        ProductDtos.ProductResponse response = mapper.toDto(saved);
+        cacheWriter.put("products", saved.getId(), response);
+        cacheWriter.invalidatePages(TaggedPageCache.PRODUCT_PAGES, ProductPageTags.forWrite(cat.getId()));
+        return response;
     }
 
 
-    @Transactional(readOnly = true)
+    /**
+     * Không mở transaction ở đây: cache hit (và các luồng chờ single-flight/khóa Redis) không được giữ
+     * connection của pool; chỉ loader khi miss mới mở transaction readOnly.
+     */
     public ProductDtos.ProductResponse get(Long id) {
-        Cache cache = cacheManager.getCache("products");
-        if (cache != null) {
-            Cache.ValueWrapper wrapper = cache.get(id);
-            
-            if (wrapper != null) {
-                Object cachedValue = wrapper.get();
-                try {
-                    if (cachedValue instanceof ProductDtos.ProductResponse) {
-                        return (ProductDtos.ProductResponse) cachedValue;
-                    }
-                    if (cachedValue instanceof LinkedHashMap) {
-                        ProductDtos.ProductResponse converted = objectMapper.convertValue(cachedValue, ProductDtos.ProductResponse.class);
-                        cache.put(id, converted);
-                        return converted;
-                    }
-                    cache.evict(id);
-                } catch (Exception ex) {
-                    cache.evict(id);
-                }
-            }
-        }
-        
-        Product entity = repo.findById(id).orElseThrow(() -> new NotFoundException("Không tìm thấy sản phẩm với ID: " + id));
-        ProductDtos.ProductResponse response = mapper.toDto(entity);
+        return readThrough.get("products", id, ProductDtos.ProductResponse.class, () -> readOnly()
+                .execute(tx -> repo.findResponseById(id))
+                .orElseThrow(() -> new NotFoundException("Không tìm thấy sản phẩm với ID: " + id)));
+    }
 
-        if (cache != null) {
-            cache.put(id, response);
+    /** Như {@link #get}: chỉ các id miss cache mới được nạp trong transaction readOnly. */
+    public ProductDtos.ProductBatchResponse getBatch(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new ValidationException("Danh sách ID không được để trống");
         }
-        return response;
+        if (ids.size() > maxBatchSize) {
+            throw new ValidationException("Tối đa " + maxBatchSize + " ID mỗi lần");
+        }
+        Map<Long, ProductDtos.ProductResponse> found = batchCache.getAll("products", ids, ProductDtos.ProductResponse.class,
+                missing -> readOnly().execute(tx -> repo.findResponsesByIds(missing)).stream()
+                        .collect(Collectors.toMap(ProductDtos.ProductResponse::id, p -> p)));
+
+        List<Long> missingIds = ids.stream().distinct().filter(id -> !found.containsKey(id)).toList();
+        return new ProductDtos.ProductBatchResponse(List.copyOf(found.values()), missingIds);
     }
 
     @Transactional
     public ProductDtos.ProductResponse update(Long id, ProductDtos.ProductUpdateRequest req) {
         Product e = repo.findById(id)
                 .orElseThrow(() -> new NotFoundException("Không tìm thấy sản phẩm với ID: " + id));
-        String trimmedName = validateAndTrimName(req.name());
-        validatePrice(req.price());
-        validateStock(req.stock());
-        validateStatus(req.status());
+        String trimmedName = validator.validateAndTrimName(req.name());
+        validator.validatePrice(req.price());
+        validator.validateStock(req.stock());
+        validator.validateStatus(req.status());
         Category cat = categories.findById(req.categoryId()).orElseThrow(() -> new NotFoundException("Không tìm thấy danh mục với ID: " + req.categoryId()));
 
         Product.ProductStatus oldStatus = e.getStatus();
+        Long oldCategoryId = e.getCategory().getId();
 
         mapper.update(e, req);
         e.setName(trimmedName);
@@ -111,6 +121,7 @@ public class ProductService {
         e.setUpdatedAt(java.time.LocalDateTime.now());
 
         Product saved = repo.save(e);
+        searchIndex.onSaved(saved);
 
         if (oldStatus == Product.ProductStatus.INACTIVE &&
                 saved.getStatus() == Product.ProductStatus.ACTIVE &&
@@ -118,90 +129,97 @@ public class ProductService {
             activateCategory(cat);
         }
 
-        return mapper.toDto(saved);
+        ProductDtos.ProductResponse response = mapper.toDto(saved);
+        cacheWriter.put("products", id, response);
+        cacheWriter.invalidatePages(TaggedPageCache.PRODUCT_PAGES, ProductPageTags.forWrite(oldCategoryId, cat.getId()));
+        return response;
     }
 
     @Transactional
-    @CacheEvict(value = "products", allEntries = true)
     public void delete(Long id) {
-        if (!repo.existsById(id)) {
-            throw new NotFoundException("Không tìm thấy sản phẩm với ID: " + id);
-        }
+        Product e = repo.findById(id)
+                .orElseThrow(() -> new NotFoundException("Không tìm thấy sản phẩm với ID: " + id));
         repo.deleteById(id);
+        searchIndex.onDeleted(id);
+        cacheWriter.evict("products", id);
+        cacheWriter.invalidatePages(TaggedPageCache.PRODUCT_PAGES, ProductPageTags.forWrite(e.getCategory().getId()));
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * Trang lọc theo danh mục/trạng thái (không có q, sku) được lấy từ TaggedPageCache, không mở transaction;
+     * chỉ khi miss mới chạy truy vấn trong transaction readOnly.
+     */
     public Page<ProductDtos.ProductResponse> search(String q, String sku, Long categoryId, String status, Integer minStockLt, Pageable pageable) {
-        if (status != null && !status.isBlank()) {
-            validateStatus(status);
-        }
-        if (minStockLt != null && minStockLt < 0) {
-            throw new ValidationException("Giá trị tồn kho tối thiểu phải >= 0");
-        }
-        return repo.search(q, sku, categoryId, status, minStockLt, pageable).map(mapper::toDto);
+        validateSearchFilters(status, minStockLt);
+        if ((q == null || q.isBlank()) && (sku == null || sku.isBlank())) {
+            return pageCache.get(TaggedPageCache.PRODUCT_PAGES, List.of(ProductPageTags.forSearch(categoryId)), pageable,
+                    () -> readOnly().execute(tx -> repo.search(q, sku, categoryId, status, minStockLt, pageable)),
+                    categoryId, status, minStockLt);
+        }
+        return readOnly().execute(tx -> {
+            List<Long> ids = searchIndex.find(q, sku);
+            if (ids != null) {
+                // Bộ lọc sku đã được áp dụng trong index
+                return repo.searchByIds(ids, null, categoryId, status, minStockLt, pageable);
+            }
+            return repo.search(q, sku, categoryId, status, minStockLt, pageable);
+        });
     }
 
-    private String validateAndTrimSku(String sku) {
-        if (sku == null || sku.isBlank()) {
-            throw new ValidationException("Mã SKU không được để trống");
-        }
-        String trimmed = sku.trim();
-        if (trimmed.length() < 3) {
-            throw new ValidationException("Mã SKU phải có ít nhất 3 ký tự");
-        }
-        if (trimmed.length() > 100) {
-            throw new ValidationException("Mã SKU không được vượt quá 100 ký tự");
-        }
-        return trimmed;
+    private TransactionTemplate readOnly() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        return tx;
     }
 
-    private String validateAndTrimName(String name) {
-        if (name == null || name.isBlank()) {
-            throw new ValidationException("Tên sản phẩm không được để trống");
-        }
-        String trimmed = name.trim();
-        if (trimmed.length() < 2) {
-            throw new ValidationException("Tên sản phẩm phải có ít nhất 2 ký tự");
-        }
-        if (trimmed.length() > 200) {
-            throw new ValidationException("Tên sản phẩm không được vượt quá 200 ký tự");
-        }
-        return trimmed;
+    /** Không chạy COUNT(*): chỉ trả về hasNext (infinite scroll). */
+    @Transactional(readOnly = true)
+    public Slice<ProductDtos.ProductResponse> searchSlice(String q, String sku, Long categoryId, String status, Integer minStockLt, Pageable pageable) {
+        validateSearchFilters(status, minStockLt);
+        return repo.searchSlice(q, sku, categoryId, status, minStockLt, pageable);
     }
 
-    private void validatePrice(BigDecimal price) {
-        if (price == null) {
-            throw new ValidationException("Giá bán không được để trống");
-        }
-        if (price.compareTo(BigDecimal.ZERO) < 0) {
-            throw new ValidationException("Giá bán phải >= 0");
-        }
-        if (price.precision() - price.scale() > 16) {
-            throw new ValidationException("Giá bán không được vượt quá 9,999,999,999,999,999.99");
-        }
-        if (price.scale() > 2) {
-            throw new ValidationException("Giá bán chỉ được có tối đa 2 chữ số thập phân");
-        }
+    /** Tổng số dòng lấy từ cache ngắn hạn, có thể lệch một chút so với thực tế. */
+    @Transactional(readOnly = true)
+    public Page<ProductDtos.ProductResponse> searchCachedCount(String q, String sku, Long categoryId, String status, Integer minStockLt, Pageable pageable) {
+        validateSearchFilters(status, minStockLt);
+        Slice<ProductDtos.ProductResponse> slice = repo.searchSlice(q, sku, categoryId, status, minStockLt, pageable);
+        long total = searchCounts.get(SearchCountCache.PRODUCT_COUNTS,
+                () -> repo.countSearch(q, sku, categoryId, status, minStockLt),
+                q, sku, categoryId, status, minStockLt);
+        long seen = pageable.getOffset() + slice.getNumberOfElements() + (slice.hasNext() ? 1 : 0);
+        return new PageImpl<>(slice.getContent(), pageable, Math.max(total, seen));
     }
 
-    private void validateStock(Integer stock) {
-        if (stock == null) {
-            throw new ValidationException("Tồn kho không được để trống");
-        }
-        if (stock < 0) {
-            throw new ValidationException("Tồn kho phải >= 0");
-        }
-        if (stock > Integer.MAX_VALUE) {
-            throw new ValidationException("Tồn kho không được vượt quá 2,147,483,647");
+    @Transactional(readOnly = true)
+    public CursorPage<ProductDtos.ProductResponse> searchAfter(String q, String sku, Long categoryId, String status, Integer minStockLt,
+                                                              Sort.Order order, String after, int size) {
+        validateSearchFilters(status, minStockLt);
+        if (size < 1) {
+            throw new ValidationException("Kích thước trang phải >= 1");
+        }
+        ProductCursor cursor = null;
+        if (after != null && !after.isBlank()) {
+            cursor = ProductCursor.decode(after);
+            if (!cursor.toOrder().equals(order)) {
+                throw new ValidationException("Cursor không khớp với tiêu chí sắp xếp hiện tại");
+            }
         }
+
+        List<ProductDtos.ProductResponse> rows = repo.searchAfter(q, sku, categoryId, status, minStockLt, order, cursor, size + 1);
+        boolean hasNext = rows.size() > size;
+        List<ProductDtos.ProductResponse> content = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? ProductCursor.of(content.get(size - 1), order).encode() : null;
+
+        return new CursorPage<>(content, size, hasNext, nextCursor);
     }
 
-    private void validateStatus(String status) {
-        if (status == null || status.isBlank()) {
-            throw new ValidationException("Trạng thái không được để trống");
+    private void validateSearchFilters(String status, Integer minStockLt) {
+        if (status != null && !status.isBlank()) {
+            validator.validateStatus(status);
         }
-        if (!status.equals("ACTIVE") && !status.equals("INACTIVE")) {
-            throw new ValidationException("Trạng thái phải là ACTIVE hoặc INACTIVE");
+        if (minStockLt != null && minStockLt < 0) {
+            throw new ValidationException("Giá trị tồn kho tối thiểu phải >= 0");
         }
     }
 
@@ -209,5 +227,8 @@ public class ProductService {
         category.setStatus(Category.CategoryStatus.ACTIVE);
         category.setUpdatedAt(java.time.LocalDateTime.now());
         categories.save(category);
+        categoryDictionary.onSaved(category);
+        cacheWriter.evict("categories", category.getId());
+        cacheWriter.invalidatePages(TaggedPageCache.CATEGORY_PAGES, TaggedPageCache.tableTag("categories"));
     }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.webmini.miniweb.catalog.product.service;
+
+import com.webmini.miniweb.common.ValidationException;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * Quy tắc kiểm tra dữ liệu sản phẩm, dùng chung cho API từng sản phẩm và import CSV.
+ * Không giữ trạng thái nên gọi song song được.
+ */
+@Component
+public class ProductValidator {
+
+    public String validateAndTrimSku(String sku) {
+        if (sku == null || sku.isBlank()) {
+            throw new ValidationException("Mã SKU không được để trống");
+        }
+        String trimmed = sku.trim();
+        if (trimmed.length() < 3) {
+            throw new ValidationException("Mã SKU phải có ít nhất 3 ký tự");
+        }
+        if (trimmed.length() > 100) {
+            throw new ValidationException("Mã SKU không được vượt quá 100 ký tự");
+        }
+        return trimmed;
+    }
+
+    public String validateAndTrimName(String name) {
+        if (name == null || name.isBlank()) {
+            throw new ValidationException("Tên sản phẩm không được để trống");
+        }
+        String trimmed = name.trim();
+        if (trimmed.length() < 2) {
+            throw new ValidationException("Tên sản phẩm phải có ít nhất 2 ký tự");
+        }
+        if (trimmed.length() > 200) {
+            throw new ValidationException("Tên sản phẩm không được vượt quá 200 ký tự");
+        }
+        return trimmed;
+    }
+
+    public void validatePrice(BigDecimal price) {
+        if (price == null) {
+            throw new ValidationException("Giá bán không được để trống");
+        }
+        if (price.compareTo(BigDecimal.ZERO) < 0) {
+            throw new ValidationException("Giá bán phải >= 0");
+        }
+        if (price.precision() - price.scale() > 16) {
+            throw new ValidationException("Giá bán không được vượt quá 9,999,999,999,999,999.99");
+        }
+        if (price.scale() > 2) {
+            throw new ValidationException("Giá bán chỉ được có tối đa 2 chữ số thập phân");
+        }
+    }
+
+    public void validateStock(Integer stock) {
+        if (stock == null) {
+            throw new ValidationException("Tồn kho không được để trống");
+        }
+        if (stock < 0) {
+            throw new ValidationException("Tồn kho phải >= 0");
+        }
+    }
+
+    public void validateStatus(String status) {
+        if (status == null || status.isBlank()) {
+            throw new ValidationException("Trạng thái không được để trống");
+        }
+        if (!status.equals("ACTIVE") && !status.equals("INACTIVE")) {
+            throw new ValidationException("Trạng thái phải là ACTIVE hoặc INACTIVE");
+        }
+    }
+}
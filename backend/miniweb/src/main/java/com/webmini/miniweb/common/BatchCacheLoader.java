@@ -0,0 +1,209 @@
+package com.webmini.miniweb.common;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Đọc nhiều key của một cache trong một lượt: L1 trước, phần còn lại một lệnh MGET tới Redis,
+ * key vẫn thiếu thì nạp bằng một lần gọi loader (một câu SQL IN (...)) rồi ghi bù vào Redis
+ * trong một pipeline. Kết quả giữ thứ tự key truyền vào, key không tồn tại bị bỏ qua.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BatchCacheLoader {
+
+    private final CacheManager cacheManager;
+    private final StringRedisTemplate redis;
+    private final CacheRefreshAhead refreshAhead;
+    private final CacheDependencyIndex dependencies;
+    private final CacheCircuitBreaker breaker;
+    private final CacheAccessTracker accessTracker;
+    private final CacheWriteFence fence;
+
+    public <K, V> Map<K, V> getAll(String cacheName, Collection<K> keys, Class<V> type,
+                                   Function<Collection<K>, Map<K, V>> loader) {
+        keys.forEach(k -> accessTracker.record(cacheName, k));
+        return load(cacheName, keys, type, loader);
+    }
+
+    /** Như getAll nhưng không tính là lượt truy cập (dùng cho warm-up). */
+    public <K, V> Map<K, V> preload(String cacheName, Collection<K> keys, Class<V> type,
+                                    Function<Collection<K>, Map<K, V>> loader) {
+        return load(cacheName, keys, type, loader);
+    }
+
+    private <K, V> Map<K, V> load(String cacheName, Collection<K> keys, Class<V> type,
+                                  Function<Collection<K>, Map<K, V>> loader) {
+        List<K> distinct = new ArrayList<>(new LinkedHashSet<>(keys));
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null || distinct.isEmpty()) {
+            return ordered(distinct, loader.apply(distinct));
+        }
+
+        Map<K, V> found = new LinkedHashMap<>();
+        List<K> remaining = new ArrayList<>(distinct);
+        // Entry có phiên bản bảng cũ coi như miss: nạp lại cùng câu IN thay vì kiểm tra từng dòng
+        VersionedCache versioned = cache instanceof VersionedCache v ? v : null;
+        Function<Object, Object> decode = versioned != null ? versioned::currentOrNull : raw -> raw;
+        TwoLevelCache twoLevel = TwoLevelCache.twoLevelOf(cache);
+        if (twoLevel != null) {
+            remaining.removeIf(k -> {
+                Cache.ValueWrapper local = twoLevel.getLocal(k);
+                Object value = local != null ? decode.apply(local.get()) : null;
+                if (type.isInstance(value)) {
+                    found.put(k, type.cast(value));
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        // Thế hệ L1 lấy trước khi đọc Redis/DB, để message hủy đến giữa chừng không bị ghi đè ở L1
+        Map<K, Long> stamps = new HashMap<>();
+        if (twoLevel != null) {
+            remaining.forEach(k -> stamps.put(k, twoLevel.stamp(k)));
+        }
+        RedisCache redisCache = TwoLevelCache.redisCacheOf(cache);
+        if (!remaining.isEmpty()) {
+            if (redisCache != null) {
+                Map<K, Object> raw = multiGet(redisCache, remaining);
+                raw.forEach((k, stored) -> {
+                    Object value = decode.apply(stored);
+                    if (type.isInstance(value)) {
+                        found.put(k, type.cast(value));
+                        if (twoLevel != null) twoLevel.putLocal(k, stored, stamps.get(k));
+                    }
+                });
+            } else {
+                for (K k : remaining) {
+                    V v = cache.get(k, type);
+                    if (v != null) found.put(k, v);
+                }
+            }
+            remaining.removeIf(found::containsKey);
+        }
+
+        if (!remaining.isEmpty()) {
+            long start = System.nanoTime();
+            long observedVersion = VersionedCache.observe(cache);
+            List<K> toLoad = List.copyOf(remaining);
+            List<String> fenceStamps = fence.stamp(cacheName, toLoad);
+            Map<K, V> loaded = loader.apply(remaining);
+            long deltaMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            // Chỉ ghi cache các key không bị write-through ghi/xóa trong lúc đang nạp
+            Map<K, V> cacheable = new LinkedHashMap<>();
+            if (!loaded.isEmpty()) {
+                fence.unchanged(cacheName, toLoad, fenceStamps).forEach(k -> {
+                    V v = loaded.get(k);
+                    if (v != null) cacheable.put(k, v);
+                });
+            }
+            if (!cacheable.isEmpty() && dependencies.record(cache, cacheable)) {
+                Map<K, Object> stored = new LinkedHashMap<>();
+                cacheable.forEach((k, v) -> stored.put(k, versioned != null ? versioned.wrap(v, observedVersion) : v));
+                if (redisCache != null) {
+                    multiPut(redisCache, stored);
+                } else {
+                    cacheable.forEach((k, v) -> VersionedCache.put(cache, k, v, observedVersion));
+                }
+                cacheable.forEach((k, v) -> {
+                    if (twoLevel != null) twoLevel.putLocal(k, stored.get(k), stamps.get(k));
+                    refreshAhead.onLoaded(cache, k, v, deltaMs);
+                });
+            }
+            found.putAll(loaded);
+        }
+        return ordered(distinct, found);
+    }
+
+    private <K> Map<K, Object> multiGet(RedisCache cache, List<K> keys) {
+        Map<K, Object> found = new LinkedHashMap<>();
+        RedisCacheConfiguration config = cache.getCacheConfiguration();
+        byte[][] redisKeys = keys.stream().map(k -> redisKey(cache, k)).toArray(byte[][]::new);
+        List<byte[]> values;
+        try {
+            values = breaker.execute(
+                    () -> redis.execute((RedisCallback<List<byte[]>>) conn -> conn.stringCommands().mGet(redisKeys)),
+                    () -> null);
+        } catch (RuntimeException e) {
+            log.warn("⚠️ MGET cache {} thất bại, nạp từ DB: {}", cache.getName(), e.getMessage());
+            return found;
+        }
+        if (values == null) {
+            return found;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] raw = values.get(i);
+            if (raw == null) {
+                continue;
+            }
+            try {
+                Object value = config.getValueSerializationPair().read(ByteBuffer.wrap(raw));
+                if (value != null) {
+                    found.put(keys.get(i), value);
+                }
+            } catch (RuntimeException e) {
+                // Entry hỏng/khác định dạng: coi như miss, lần ghi bù sẽ đè lên
+                log.debug("Bỏ qua entry cache {}::{} không giải mã được", cache.getName(), keys.get(i));
+            }
+        }
+        return found;
+    }
+
+    private <K> void multiPut(RedisCache cache, Map<K, Object> entries) {
+        RedisCacheConfiguration config = cache.getCacheConfiguration();
+        try {
+            breaker.run(() -> redis.executePipelined((RedisCallback<Object>) conn -> {
+                entries.forEach((k, v) -> {
+                    ByteBuffer buffer = config.getValueSerializationPair().write(v);
+                    byte[] value = new byte[buffer.remaining()];
+                    buffer.get(value);
+                    Duration ttl = config.getTtlFunction().getTimeToLive(k, v);
+                    Expiration expiration = ttl == null || ttl.isZero() || ttl.isNegative()
+                            ? Expiration.persistent()
+                            : Expiration.from(ttl);
+                    conn.stringCommands().set(redisKey(cache, k), value, expiration, RedisStringCommands.SetOption.upsert());
+                });
+                return null;
+            }), () -> entries.keySet().forEach(k -> breaker.defer(cache.getName(), k)));
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Ghi bù cache {} thất bại: {}", cache.getName(), e.getMessage());
+        }
+    }
+
+    private static byte[] redisKey(RedisCache cache, Object key) {
+        return (cache.getCacheConfiguration().getKeyPrefixFor(cache.getName()) + key).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static <K, V> Map<K, V> ordered(List<K> keys, Map<K, V> values) {
+        Map<K, V> result = new LinkedHashMap<>();
+        for (K k : keys) {
+            V v = values.get(k);
+            if (v != null) result.put(k, v);
+        }
+        return result;
+    }
+}
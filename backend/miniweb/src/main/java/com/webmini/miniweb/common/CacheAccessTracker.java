@@ -0,0 +1,145 @@
+package com.webmini.miniweb.common;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Đếm số lần truy cập theo key của một số cache, gom trong process rồi định kỳ (và khi tắt) cộng dồn vào
+ * sorted set Redis {@code cache:hot:<cache>}. Lần khởi động sau, CacheWarmup đọc top-N từ đây để nạp trước.
+ * Cứ mỗi cache.hot-keys.half-life điểm cũ bị chia đôi, nên key nóng từ lâu dần mất ưu tiên. Việc chia đôi
+ * chạy theo lịch flush và chỉ một node làm mỗi chu kỳ (khóa SET NX {@code cache:hot:<cache>:decay} sống
+ * đúng một chu kỳ), nên số node hay số lần deploy không ảnh hưởng tốc độ nhạt dần.
+ */
+@Slf4j
+@Component
+public class CacheAccessTracker implements DisposableBean {
+
+    private static final String PREFIX = "cache:hot:";
+    private static final String DECAY_SUFFIX = ":decay";
+    private static final Duration RETENTION = Duration.ofDays(7);
+
+    private final StringRedisTemplate redis;
+    private final CacheCircuitBreaker breaker;
+    private final Set<String> cacheNames;
+    private final int maxTrackedKeys;
+    private final int keepTop;
+    private final Duration halfLife;
+
+    private volatile Map<String, Map<String, LongAdder>> counts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "cache-access-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public CacheAccessTracker(StringRedisTemplate redis, CacheCircuitBreaker breaker,
+                              @Value("${cache.hot-keys.cache-names:products}") Set<String> cacheNames,
+                              @Value("${cache.hot-keys.max-tracked:50000}") int maxTrackedKeys,
+                              @Value("${cache.hot-keys.keep-top:20000}") int keepTop,
+                              @Value("${cache.hot-keys.flush-interval:PT1M}") Duration flushInterval,
+                              @Value("${cache.hot-keys.half-life:PT24H}") Duration halfLife) {
+        this.redis = redis;
+        this.breaker = breaker;
+        this.cacheNames = cacheNames;
+        this.maxTrackedKeys = maxTrackedKeys;
+        this.keepTop = keepTop;
+        this.halfLife = halfLife;
+        long interval = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void record(String cacheName, Object key) {
+        if (!cacheNames.contains(cacheName)) {
+            return;
+        }
+        Map<String, LongAdder> perCache = counts.computeIfAbsent(cacheName, n -> new ConcurrentHashMap<>());
+        LongAdder counter = perCache.get(String.valueOf(key));
+        if (counter == null) {
+            if (perCache.size() >= maxTrackedKeys) {
+                // Đủ nhiều key rồi, key mới trong chu kỳ này bỏ qua (key nóng thật sẽ quay lại chu kỳ sau)
+                return;
+            }
+            counter = perCache.computeIfAbsent(String.valueOf(key), k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /** Top-n key được truy cập nhiều nhất (tính cả các lần chạy trước), giảm dần. Chỉ đọc, không làm nhạt điểm. */
+    public List<String> top(String cacheName, int n) {
+        String key = PREFIX + cacheName;
+        return breaker.execute(() -> {
+            Set<String> top = redis.opsForZSet().reverseRange(key, 0, n - 1L);
+            return top != null ? List.copyOf(top) : List.<String>of();
+        }, List::of);
+    }
+
+    /**
+     * Chia đôi điểm nếu đã hết một chu kỳ half-life: node nào đặt được khóa decay thì làm, các node khác bỏ qua.
+     * ZUNIONSTORE là một lệnh nguyên tử nên không xen với ZINCRBY của node khác.
+     */
+    private void decayIfDue(String cacheName) {
+        String key = PREFIX + cacheName;
+        breaker.run(() -> {
+            if (Boolean.TRUE.equals(redis.opsForValue().setIfAbsent(key + DECAY_SUFFIX, "1", halfLife))) {
+                redis.opsForZSet().unionAndStore(key, List.of(), key, Aggregate.SUM, Weights.of(0.5));
+                redis.expire(key, RETENTION);
+            }
+        }, () -> { });
+    }
+
+    private void flush() {
+        Map<String, Map<String, LongAdder>> snapshot = counts;
+        counts = new ConcurrentHashMap<>();
+        cacheNames.forEach(this::decayIfDue);
+        snapshot.forEach((cacheName, perCache) -> {
+            if (perCache.isEmpty()) {
+                return;
+            }
+            byte[] rawKey = (PREFIX + cacheName).getBytes(StandardCharsets.UTF_8);
+            breaker.run(() -> redis.executePipelined((RedisCallback<Object>) conn -> {
+                perCache.forEach((k, adder) -> conn.zSetCommands().zIncrBy(rawKey, adder.sum(), k.getBytes(StandardCharsets.UTF_8)));
+                trim(conn, rawKey);
+                return null;
+            }), () -> { });
+        });
+    }
+
+    private void trim(RedisConnection conn, byte[] rawKey) {
+        // Chỉ giữ keepTop key điểm cao nhất, và cho cả set hết hạn nếu ứng dụng ngừng chạy lâu
+        conn.zSetCommands().zRemRange(rawKey, 0, -keepTop - 1L);
+        conn.keyCommands().pExpire(rawKey, RETENTION.toMillis());
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Không ghi được thống kê truy cập cache: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flusher.shutdownNow();
+        // Ghi nốt số đếm của lần chạy này cho lần khởi động sau
+        flushQuietly();
+    }
+}
@@ -0,0 +1,50 @@
+package com.webmini.miniweb.common;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Xóa nhiều key của một cache trong một lệnh DEL thay vì evict từng key một.
+ */
+@Component
+@RequiredArgsConstructor
+public class CacheBulkEvictor {
+
+    private static final int DEL_CHUNK = 1000;
+
+    private final CacheManager cacheManager;
+    private final StringRedisTemplate redis;
+    private final CacheCircuitBreaker breaker;
+
+    public void evictAll(String cacheName, Collection<?> keys) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null || keys.isEmpty()) {
+            return;
+        }
+        TwoLevelCache twoLevel = TwoLevelCache.twoLevelOf(cache);
+        if (twoLevel != null) {
+            twoLevel.evictLocal(keys);
+        }
+        RedisCache redisCache = TwoLevelCache.redisCacheOf(cache);
+        if (redisCache == null) {
+            Cache target = twoLevel != null ? twoLevel.getL2() : cache;
+            keys.forEach(target::evict);
+            return;
+        }
+        List<?> keyList = List.copyOf(keys);
+        String prefix = redisCache.getCacheConfiguration().getKeyPrefixFor(cacheName);
+        for (int from = 0; from < keyList.size(); from += DEL_CHUNK) {
+            List<?> chunk = keyList.subList(from, Math.min(from + DEL_CHUNK, keyList.size()));
+            List<String> redisKeys = chunk.stream().map(k -> prefix + k).toList();
+            // Redis không phản hồi: nhớ lại các key để xóa khi mạch đóng
+            breaker.run(() -> redis.delete(redisKeys), () -> chunk.forEach(k -> breaker.defer(cacheName, k)));
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.webmini.miniweb.common;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker cho tầng cache Redis. Mỗi thao tác Redis đi qua {@link #execute}; lỗi kết nối/timeout
+ * (DataAccessException, timeout mỗi lệnh do spring.data.redis.timeout quyết định) liên tiếp quá
+ * failure-threshold lần thì mở mạch trong open-duration: mọi thao tác Redis bị bỏ qua ngay và dùng fallback
+ * (L1 trong process, hoặc đọc thẳng DB). Hết thời gian thì cho một request thử (HALF_OPEN); thành công thì đóng lại.
+ * <p>
+ * Trong lúc mở, các key đáng lẽ phải ghi/xóa ở Redis được ghi nhớ (có giới hạn; tràn thì nhớ "xóa cả cache")
+ * và được xóa khi mạch đóng lại, để Redis không giữ giá trị cũ. Trạng thái xem ở /actuator/cachebreaker
+ * và metric cache.breaker.state (0 = CLOSED, 1 = OPEN, 2 = HALF_OPEN).
+ */
+@Slf4j
+@Component
+@Endpoint(id = "cachebreaker")
+public class CacheCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private enum Permit { DENIED, NORMAL, PROBE }
+
+    /** Việc còn nợ Redis khi mạch đóng lại: key cần xóa theo cache, và các cache cần xóa toàn bộ. */
+    public record Recovery(Map<String, Set<String>> evicts, Set<String> clears) {}
+
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final int maxDeferredKeys;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private volatile long openedAt;
+    private volatile String lastError;
+
+    private final Map<String, Set<String>> deferredEvicts = new ConcurrentHashMap<>();
+    private final Set<String> deferredClears = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger deferredKeys = new AtomicInteger();
+    private final List<Consumer<Recovery>> recoveryListeners = new CopyOnWriteArrayList<>();
+
+    private final Counter failures;
+    private final Counter shortCircuited;
+
+    public CacheCircuitBreaker(MeterRegistry registry,
+                               @Value("${cache.breaker.failure-threshold:5}") int failureThreshold,
+                               @Value("${cache.breaker.open-duration:PT10S}") Duration openDuration,
+                               @Value("${cache.breaker.max-deferred-keys:10000}") int maxDeferredKeys) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.maxDeferredKeys = maxDeferredKeys;
+        Gauge.builder("cache.breaker.state", state, s -> s.get().ordinal()).register(registry);
+        this.failures = registry.counter("cache.breaker.calls", "result", "failed");
+        this.shortCircuited = registry.counter("cache.breaker.calls", "result", "short_circuited");
+    }
+
+    /** Chạy thao tác Redis; mạch mở hoặc Redis lỗi thì trả về fallback thay vì ném lỗi. */
+    public <T> T execute(Supplier<T> operation, Supplier<T> fallback) {
+        Permit permit = tryAcquire();
+        if (permit == Permit.DENIED) {
+            shortCircuited.increment();
+            return fallback.get();
+        }
+        boolean probe = permit == Permit.PROBE;
+        try {
+            T result = operation.get();
+            onSuccess(probe);
+            return result;
+        } catch (DataAccessException e) {
+            // Chỉ lỗi kết nối/timeout mới tính; lỗi giải mã một entry không phải do Redis chết
+            onFailure(probe, e);
+            return fallback.get();
+        } catch (RuntimeException e) {
+            if (probe) {
+                // Lần thử không kết luận được gì, nhường cho request sau
+                probing.set(false);
+            }
+            throw e;
+        }
+    }
+
+    public void run(Runnable operation, Runnable fallback) {
+        execute(() -> {
+            operation.run();
+            return null;
+        }, () -> {
+            fallback.run();
+            return null;
+        });
+    }
+
+    public boolean isOpen() {
+        return state.get() == State.OPEN;
+    }
+
+    /** Ghi nhớ key cần xóa ở Redis khi mạch đóng lại. */
+    public void defer(String cacheName, Object key) {
+        if (deferredClears.contains(cacheName)) {
+            return;
+        }
+        if (deferredKeys.incrementAndGet() > maxDeferredKeys) {
+            deferClear(cacheName);
+            return;
+        }
+        deferredEvicts.computeIfAbsent(cacheName, n -> ConcurrentHashMap.newKeySet()).add(String.valueOf(key));
+    }
+
+    /** Ghi nhớ phải xóa toàn bộ cache khi mạch đóng lại. */
+    public void deferClear(String cacheName) {
+        deferredClears.add(cacheName);
+    }
+
+    /** Đăng ký việc cần làm khi mạch đóng lại (chạy nền, không trên request vừa thử thành công). */
+    public void onRecovery(Consumer<Recovery> listener) {
+        recoveryListeners.add(listener);
+    }
+
+    @ReadOperation
+    public Map<String, Object> report() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("state", state.get());
+        report.put("consecutiveFailures", consecutiveFailures.get());
+        report.put("failureThreshold", failureThreshold);
+        report.put("openDuration", openDuration.toString());
+        report.put("openedAt", openedAt > 0 ? Instant.ofEpochMilli(openedAt).toString() : null);
+        report.put("lastError", lastError);
+        report.put("failedCalls", (long) failures.count());
+        report.put("shortCircuitedCalls", (long) shortCircuited.count());
+        report.put("deferredKeys", deferredEvicts.values().stream().mapToInt(Set::size).sum());
+        report.put("deferredClears", Set.copyOf(deferredClears));
+        return report;
+    }
+
+    private Permit tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return Permit.NORMAL;
+        }
+        if (current == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDuration.toMillis()
+                    || !state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                return Permit.DENIED;
+            }
+            log.info("Cache breaker HALF_OPEN, thử lại Redis");
+        }
+        // HALF_OPEN: mỗi lúc chỉ một request thử
+        return probing.compareAndSet(false, true) ? Permit.PROBE : Permit.DENIED;
+    }
+
+    private void onSuccess(boolean probe) {
+        consecutiveFailures.set(0);
+        if (probe) {
+            probing.set(false);
+            if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+                log.info("✅ Cache breaker CLOSED, Redis đã hoạt động lại");
+                recover();
+            }
+        }
+    }
+
+    private void onFailure(boolean probe, DataAccessException e) {
+        failures.increment();
+        lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+        if (probe) {
+            probing.set(false);
+            open(State.HALF_OPEN);
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open(State.CLOSED);
+        }
+    }
+
+    private void open(State from) {
+        if (state.compareAndSet(from, State.OPEN)) {
+            openedAt = System.currentTimeMillis();
+            log.warn("⚠️ Cache breaker OPEN trong {}: {}", openDuration, lastError);
+        }
+    }
+
+    private void recover() {
+        Map<String, Set<String>> evicts = new HashMap<>();
+        deferredEvicts.keySet().forEach(name -> {
+            Set<String> keys = deferredEvicts.remove(name);
+            if (keys != null) evicts.put(name, keys);
+        });
+        Set<String> clears = Set.copyOf(deferredClears);
+        deferredClears.removeAll(clears);
+        deferredKeys.set(0);
+        Recovery recovery = new Recovery(evicts, clears);
+        CompletableFuture.runAsync(() -> recoveryListeners.forEach(listener -> {
+            try {
+                listener.accept(recovery);
+            } catch (RuntimeException e) {
+                log.warn("⚠️ Lỗi khi đồng bộ lại cache sau sự cố Redis: {}", e.getMessage());
+            }
+        }));
+    }
+}
@@ -0,0 +1,125 @@
+package com.webmini.miniweb.common;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Chỉ mục ngược "phụ thuộc -> key cache" trong Redis set, để khi một bản ghi thay đổi thì xóa đúng
+ * các entry đang nhúng dữ liệu của nó (VD đổi tên danh mục -> các ProductResponse có categoryName cũ),
+ * không phải xóa cả cache hay chờ hết TTL.
+ * <p>
+ * Mỗi cache đăng ký một hàm lấy phụ thuộc từ giá trị; mỗi lần ghi entry vào cache thì key được SADD
+ * vào set {@code cache:deps:<cache>:<phụ thuộc>} (TTL theo TTL của entry). Việc ghi chỉ mục làm trước
+ * khi ghi cache, nên entry nào đã nằm trong cache thì chắc chắn đã có trong chỉ mục.
+ */
+@Slf4j
+public class CacheDependencyIndex {
+
+    private static final String PREFIX = "cache:deps:";
+
+    private final StringRedisTemplate redis;
+    private final CacheBulkEvictor bulkEvictor;
+    private final CacheCircuitBreaker breaker;
+    private final Map<String, Function<Object, String>> extractors = new ConcurrentHashMap<>();
+
+    public CacheDependencyIndex(StringRedisTemplate redis, CacheBulkEvictor bulkEvictor, CacheCircuitBreaker breaker) {
+        this.redis = redis;
+        this.bulkEvictor = bulkEvictor;
+        this.breaker = breaker;
+    }
+
+    /** Tên phụ thuộc chuẩn cho một entry của cache khác, VD {@code categories::5}. */
+    public static String dependency(String cacheName, Object key) {
+        return cacheName + "::" + key;
+    }
+
+    /** Khai báo entry của cacheName phụ thuộc vào gì (hàm trả null nếu giá trị không phụ thuộc gì). */
+    public CacheDependencyIndex track(String cacheName, Function<Object, String> dependencyOf) {
+        extractors.put(cacheName, dependencyOf);
+        return this;
+    }
+
+    /**
+     * Gọi ngay trước khi ghi một entry vào cache. Trả về false nếu không ghi được chỉ mục:
+     * khi đó người gọi không được ghi entry, vì sẽ không ai xóa được nó khi phụ thuộc thay đổi.
+     */
+    public boolean record(Cache cache, Object key, Object value) {
+        return record(cache, Map.of(key, value));
+    }
+
+    /** Như {@link #record(Cache, Object, Object)} cho nhiều entry, gom vào một pipeline. */
+    public boolean record(Cache cache, Map<?, ?> entries) {
+        Function<Object, String> dependencyOf = extractors.get(cache.getName());
+        if (dependencyOf == null || entries.isEmpty()) {
+            return true;
+        }
+        try {
+            return breaker.execute(() -> {
+                redis.executePipelined((RedisCallback<Object>) conn -> {
+                    entries.forEach((k, v) -> {
+                        String dependency = v != null ? dependencyOf.apply(v) : null;
+                        if (dependency != null) {
+                            add(conn, indexKey(cache.getName(), dependency), String.valueOf(k), ttlOf(cache, k, v));
+                        }
+                    });
+                    return null;
+                });
+                return true;
+            }, () -> false);
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Không ghi được chỉ mục phụ thuộc của cache {}: {}", cache.getName(), e.getMessage());
+            return false;
+        }
+    }
+
+    /** Xóa khỏi mọi cache đã đăng ký các entry phụ thuộc vào dependency. Trả về số key đã xóa. */
+    public int invalidate(String dependency) {
+        int evicted = 0;
+        for (String cacheName : extractors.keySet()) {
+            String indexKey = indexKey(cacheName, dependency);
+            Set<String> keys = breaker.execute(() -> redis.opsForSet().members(indexKey), () -> {
+                // Không đọc được chỉ mục: xóa cả cache khi Redis hoạt động lại
+                breaker.deferClear(cacheName);
+                return null;
+            });
+            if (keys == null || keys.isEmpty()) {
+                continue;
+            }
+            bulkEvictor.evictAll(cacheName, keys);
+            // Chỉ bỏ các key vừa xóa: key được thêm vào giữa chừng vẫn còn trong chỉ mục
+            breaker.run(() -> redis.opsForSet().remove(indexKey, keys.toArray()), () -> { });
+            evicted += keys.size();
+            log.info("Đã xóa {} entry cache {} phụ thuộc vào {}", keys.size(), cacheName, dependency);
+        }
+        return evicted;
+    }
+
+    private static void add(RedisConnection conn, String indexKey, String member, Duration ttl) {
+        byte[] rawKey = indexKey.getBytes(StandardCharsets.UTF_8);
+        conn.setCommands().sAdd(rawKey, member.getBytes(StandardCharsets.UTF_8));
+        if (ttl != null && !ttl.isZero() && !ttl.isNegative()) {
+            // Set sống lâu bằng entry mới nhất; member của entry đã hết hạn thì vô hại
+            conn.keyCommands().pExpire(rawKey, ttl.toMillis());
+        }
+    }
+
+    private static Duration ttlOf(Cache cache, Object key, Object value) {
+        RedisCache redisCache = TwoLevelCache.redisCacheOf(cache);
+        return redisCache != null ? redisCache.getCacheConfiguration().getTtlFunction().getTimeToLive(key, value) : null;
+    }
+
+    private static String indexKey(String cacheName, String dependency) {
+        return PREFIX + cacheName + ":" + dependency;
+    }
+}
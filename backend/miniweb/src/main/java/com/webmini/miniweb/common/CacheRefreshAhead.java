@@ -0,0 +1,231 @@
+package com.webmini.miniweb.common;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Làm mới cache trước khi hết hạn theo kiểu XFetch: mỗi lần hit, key được nạp lại nền khi
+ * {@code now - delta * beta * hotness * ln(rand) >= expiry}, với delta là thời gian nạp lần trước và
+ * hotness = 1 + ln(1 + số hit từ lần nạp trước). Key càng nóng và càng gần hết hạn thì càng dễ được làm mới,
+ * key nguội thì cứ để hết hạn. Thời điểm hết hạn được ghi lại khi node này nạp key; key do node khác nạp
+ * thì đọc PTTL từ Redis một lần (nền). Việc nạp chạy trên pool giới hạn, có metric qua Micrometer.
+ */
+@Slf4j
+@Component
+public class CacheRefreshAhead implements DisposableBean {
+
+    private final RedisLocks locks;
+    private final CacheDependencyIndex dependencies;
+    private final CacheCircuitBreaker breaker;
+    private final CacheWriteFence fence;
+    private final StringRedisTemplate redis;
+    private final boolean enabled;
+    private final Set<String> cacheNames;
+    private final double beta;
+    private final long minDeltaMs;
+    private final boolean lockEnabled;
+    private final Duration lockTtl;
+
+    private final com.github.benmanes.caffeine.cache.Cache<String, EntryMeta> meta = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor;
+    private final Counter scheduled;
+    private final Counter completed;
+    private final Counter failed;
+    private final Counter rejected;
+
+    private record EntryMeta(long expiresAt, long deltaMs, LongAdder hits) {}
+
+    public CacheRefreshAhead(RedisLocks locks, CacheDependencyIndex dependencies, CacheCircuitBreaker breaker,
+                             CacheWriteFence fence, StringRedisTemplate redis, MeterRegistry registry,
+                             @Value("${cache.refresh-ahead.enabled:true}") boolean enabled,
+                             @Value("${cache.refresh-ahead.cache-names:products,categories}") Set<String> cacheNames,
+                             @Value("${cache.refresh-ahead.beta:1.0}") double beta,
+                             @Value("${cache.refresh-ahead.min-delta:PT0.2S}") Duration minDelta,
+                             @Value("${cache.refresh-ahead.threads:4}") int threads,
+                             @Value("${cache.refresh-ahead.queue-capacity:1000}") int queueCapacity,
+                             @Value("${cache.lock.enabled:false}") boolean lockEnabled,
+                             @Value("${cache.lock.ttl:PT5S}") Duration lockTtl) {
+        this.locks = locks;
+        this.dependencies = dependencies;
+        this.breaker = breaker;
+        this.fence = fence;
+        this.redis = redis;
+        this.enabled = enabled;
+        this.cacheNames = cacheNames;
+        this.beta = beta;
+        this.minDeltaMs = minDelta.toMillis();
+        this.lockEnabled = lockEnabled;
+        this.lockTtl = lockTtl;
+
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "cache-refresh-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+
+        new ExecutorServiceMetrics(executor, "cache.refresh", Tags.empty()).bindTo(registry);
+        this.scheduled = registry.counter("cache.refresh.ahead", "result", "scheduled");
+        this.completed = registry.counter("cache.refresh.ahead", "result", "completed");
+        this.failed = registry.counter("cache.refresh.ahead", "result", "failed");
+        this.rejected = registry.counter("cache.refresh.ahead", "result", "rejected");
+    }
+
+    /** Gọi sau khi nạp key vào cache, với thời gian nạp đo được. */
+    public void onLoaded(Cache cache, Object key, Object value, long deltaMs) {
+        if (!applies(cache)) {
+            return;
+        }
+        Duration ttl = ttlOf(cache, key, value);
+        if (ttl != null && !ttl.isZero() && !ttl.isNegative()) {
+            meta.put(metaKey(cache, key), new EntryMeta(System.currentTimeMillis() + ttl.toMillis(), deltaMs, new LongAdder()));
+        }
+    }
+
+    /** Gọi mỗi lần hit; có thể xếp lịch nạp lại nền bằng loader. */
+    public void onHit(Cache cache, Object key, Supplier<?> loader) {
+        if (!applies(cache)) {
+            return;
+        }
+        String metaKey = metaKey(cache, key);
+        EntryMeta m = meta.getIfPresent(metaKey);
+        if (m == null) {
+            submit(metaKey, () -> probeExpiry(cache, key, metaKey));
+            return;
+        }
+        m.hits().increment();
+        double hotness = 1 + Math.log1p(m.hits().sum());
+        double delta = Math.max(m.deltaMs(), minDeltaMs);
+        double early = -delta * beta * hotness * Math.log(ThreadLocalRandom.current().nextDouble());
+        if (System.currentTimeMillis() + early >= m.expiresAt()) {
+            if (submit(metaKey, () -> refresh(cache, key, loader))) {
+                scheduled.increment();
+            }
+        }
+    }
+
+    /** Key bị xóa/ghi đè từ bên ngoài thì quên thời điểm hết hạn cũ. */
+    public void forget(Cache cache, Object key) {
+        meta.invalidate(metaKey(cache, key));
+    }
+
+    private boolean submit(String metaKey, Runnable task) {
+        if (!pending.add(metaKey)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    pending.remove(metaKey);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(metaKey);
+            rejected.increment();
+            return false;
+        }
+    }
+
+    private void refresh(Cache cache, Object key, Supplier<?> loader) {
+        String lockKey = RedisLocks.cacheLockKey(cache.getName(), key);
+        String token = null;
+        if (lockEnabled) {
+            token = locks.tryLock(lockKey, lockTtl);
+            if (token == null) {
+                // Node khác đang nạp key này
+                return;
+            }
+        }
+        try {
+            long start = System.nanoTime();
+            long observedVersion = VersionedCache.observe(cache);
+            String fenceStamp = fence.stamp(cache.getName(), key);
+            Object value = loader.get();
+            long deltaMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            // Bị write-through ghi trong lúc làm mới thì giữ giá trị của write-through
+            if (value != null && fence.unchanged(cache.getName(), key, fenceStamp) && dependencies.record(cache, key, value)) {
+                VersionedCache.put(cache, key, value, observedVersion);
+                onLoaded(cache, key, value, deltaMs);
+            }
+            completed.increment();
+        } catch (NotFoundException e) {
+            cache.evict(key);
+            forget(cache, key);
+            completed.increment();
+        } catch (RuntimeException e) {
+            failed.increment();
+            log.warn("⚠️ Làm mới cache {}::{} thất bại: {}", cache.getName(), key, e.getMessage());
+        } finally {
+            if (token != null) {
+                locks.unlock(lockKey, token);
+            }
+        }
+    }
+
+    private void probeExpiry(Cache cache, Object key, String metaKey) {
+        RedisCache redisCache = TwoLevelCache.redisCacheOf(cache);
+        if (redisCache == null) {
+            return;
+        }
+        try {
+            Long ttlMs = breaker.execute(() -> redis.getExpire(
+                    redisCache.getCacheConfiguration().getKeyPrefixFor(cache.getName()) + key, TimeUnit.MILLISECONDS), () -> null);
+            if (ttlMs != null) {
+                // -1: không hết hạn; -2: không còn trong Redis (chỉ còn ở L1) nên nạp lại ngay khi được hit tiếp
+                long expiresAt = ttlMs == -1 ? Long.MAX_VALUE : System.currentTimeMillis() + Math.max(ttlMs, 0);
+                meta.put(metaKey, new EntryMeta(expiresAt, minDeltaMs, new LongAdder()));
+            }
+        } catch (RuntimeException e) {
+            log.debug("Không đọc được PTTL của {}::{}: {}", cache.getName(), key, e.getMessage());
+        }
+    }
+
+    private boolean applies(Cache cache) {
+        return enabled && cacheNames.contains(cache.getName());
+    }
+
+    private static Duration ttlOf(Cache cache, Object key, Object value) {
+        RedisCache redisCache = TwoLevelCache.redisCacheOf(cache);
+        return redisCache != null ? redisCache.getCacheConfiguration().getTtlFunction().getTimeToLive(key, value) : null;
+    }
+
+    private static String metaKey(Cache cache, Object key) {
+        return cache.getName() + "::" + key;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,120 @@
+package com.webmini.miniweb.common;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Rào ghi theo key: CacheWriteThrough tăng bộ đếm {@code cache:fence:<cache>:<key>} ngay trước khi put/evict
+ * sau commit; các đường nạp từ DB (ReadThroughCache, CacheRefreshAhead, BatchCacheLoader) đọc bộ đếm trước khi
+ * đọc DB và chỉ ghi kết quả vào cache nếu bộ đếm chưa đổi. Nhờ vậy một lần nạp đã đọc dòng trước commit
+ * không ghi đè giá trị write-through mới hơn, dù lần nạp chạy ở node nào.
+ * <p>
+ * Bộ đếm sống cache.write-fence.ttl, phải dài hơn mọi lần nạp. Redis lỗi khi đọc bộ đếm thì người nạp
+ * không ghi cache (chỉ mất một lần cache, không bao giờ ghi giá trị cũ).
+ */
+@Slf4j
+@Component
+public class CacheWriteFence {
+
+    private static final String PREFIX = "cache:fence:";
+    private static final String ABSENT = "";
+
+    private final StringRedisTemplate redis;
+    private final CacheCircuitBreaker breaker;
+    private final Duration ttl;
+
+    public CacheWriteFence(StringRedisTemplate redis, CacheCircuitBreaker breaker,
+                           @Value("${cache.write-fence.ttl:PT1M}") Duration ttl) {
+        this.redis = redis;
+        this.breaker = breaker;
+        this.ttl = ttl;
+    }
+
+    /** Gọi ngay trước khi ghi/xóa các key này ở cache sau commit. */
+    public void mark(String cacheName, Collection<?> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        try {
+            breaker.run(() -> redis.executePipelined((RedisCallback<Object>) conn -> {
+                keys.forEach(k -> incr(conn, raw(cacheName, k)));
+                return null;
+            }), () -> { });
+        } catch (RuntimeException e) {
+            // Thao tác cache ngay sau đó cũng sẽ lỗi/bị hoãn như vậy
+            log.warn("⚠️ Không ghi được rào ghi cho {} key của cache {}: {}", keys.size(), cacheName, e.getMessage());
+        }
+    }
+
+    /** Bộ đếm hiện tại của các key (cùng thứ tự), lấy trước khi đọc DB; null nếu không đọc được. */
+    public List<String> stamp(String cacheName, List<?> keys) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        try {
+            return breaker.execute(() -> {
+                List<String> values = redis.opsForValue().multiGet(keys.stream().map(k -> key(cacheName, k)).toList());
+                if (values == null) {
+                    return null;
+                }
+                List<String> stamps = new ArrayList<>(values.size());
+                values.forEach(v -> stamps.add(v != null ? v : ABSENT));
+                return stamps;
+            }, () -> null);
+        } catch (RuntimeException e) {
+            log.debug("Không đọc được rào ghi của cache {}: {}", cacheName, e.getMessage());
+            return null;
+        }
+    }
+
+    public String stamp(String cacheName, Object key) {
+        List<String> stamps = stamp(cacheName, List.of(key));
+        return stamps != null ? stamps.get(0) : null;
+    }
+
+    /** Các key (trong keys) không bị ghi kể từ lúc lấy stamps, tức là được phép ghi kết quả vừa nạp. */
+    public <K> List<K> unchanged(String cacheName, List<K> keys, List<String> stamps) {
+        if (stamps == null) {
+            return List.of();
+        }
+        List<String> now = stamp(cacheName, keys);
+        if (now == null) {
+            return List.of();
+        }
+        List<K> result = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            if (Objects.equals(stamps.get(i), now.get(i))) {
+                result.add(keys.get(i));
+            }
+        }
+        return result;
+    }
+
+    public boolean unchanged(String cacheName, Object key, String stamp) {
+        return !unchanged(cacheName, List.of(key), stamp != null ? List.of(stamp) : null).isEmpty();
+    }
+
+    private void incr(RedisConnection conn, byte[] rawKey) {
+        conn.stringCommands().incr(rawKey);
+        conn.keyCommands().pExpire(rawKey, ttl.toMillis());
+    }
+
+    private static String key(String cacheName, Object key) {
+        return PREFIX + cacheName + ":" + key;
+    }
+
+    private static byte[] raw(String cacheName, Object key) {
+        return key(cacheName, key).getBytes(StandardCharsets.UTF_8);
+    }
+}
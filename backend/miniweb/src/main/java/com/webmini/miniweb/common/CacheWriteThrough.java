@@ -0,0 +1,135 @@
+package com.webmini.miniweb.common;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Cập nhật cache theo từng key khi ghi dữ liệu: put giá trị mới (write-through) hoặc evict đúng key,
+ * luôn sau khi transaction commit để cache không bao giờ chứa dữ liệu chưa commit/bị rollback.
+ * Trước mỗi put/evict, key được đánh dấu ở CacheWriteFence để các lần nạp từ DB đang dở (đã đọc dòng cũ)
+ * không ghi đè lên sau đó.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheWriteThrough {
+
+    private final CacheManager cacheManager;
+    private final CacheBulkEvictor bulkEvictor;
+    private final CacheRefreshAhead refreshAhead;
+    private final CacheDependencyIndex dependencies;
+    private final NegativeCache negativeCache;
+    private final TaggedPageCache pageCache;
+    private final CacheWriteFence fence;
+
+    public void put(String cacheName, Object key, Object value) {
+        afterCommit(() -> {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache == null) {
+                return;
+            }
+            try {
+                fence.mark(cacheName, List.of(key));
+                if (!dependencies.record(cache, key, value)) {
+                    evictQuietly(cache, key);
+                    return;
+                }
+                cache.put(key, value);
+                negativeCache.clearAll(cacheName, List.of(key));
+                refreshAhead.onLoaded(cache, key, value, 0);
+            } catch (RuntimeException e) {
+                // Không ghi được giá trị mới thì ít nhất đừng để lại giá trị cũ
+                log.warn("⚠️ Không ghi được cache {}::{}: {}", cacheName, key, e.getMessage());
+                evictQuietly(cache, key);
+            }
+        });
+    }
+
+    public void evict(String cacheName, Object key) {
+        afterCommit(() -> {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                fence.mark(cacheName, List.of(key));
+                evictQuietly(cache, key);
+            }
+        });
+    }
+
+    public void evictAll(String cacheName, Collection<?> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<?> snapshot = List.copyOf(keys);
+        afterCommit(() -> {
+            try {
+                fence.mark(cacheName, snapshot);
+                bulkEvictor.evictAll(cacheName, snapshot);
+            } catch (RuntimeException e) {
+                log.warn("⚠️ Không xóa được {} key của cache {}: {}", snapshot.size(), cacheName, e.getMessage());
+            }
+        });
+    }
+
+    /** Bỏ tombstone "không tồn tại" của các key vừa được tạo bằng đường ghi không đi qua put (VD import). */
+    public void clearMissing(String cacheName, Collection<?> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<?> snapshot = List.copyOf(keys);
+        afterCommit(() -> negativeCache.clearAll(cacheName, snapshot));
+    }
+
+    /** Làm mất các trang tìm kiếm đã cache (TaggedPageCache) gắn một trong các tag, sau commit. */
+    public void invalidatePages(String cacheName, String... tags) {
+        List<String> snapshot = List.of(tags);
+        afterCommit(() -> {
+            try {
+                pageCache.invalidate(cacheName, snapshot);
+            } catch (RuntimeException e) {
+                log.warn("⚠️ Không vô hiệu hóa được tag {} của cache {}: {}", snapshot, cacheName, e.getMessage());
+            }
+        });
+    }
+
+    /** Xóa mọi entry (ở các cache khác) đang nhúng dữ liệu của dependencyCache::dependencyKey. */
+    public void evictDependents(String dependencyCache, Object dependencyKey) {
+        String dependency = CacheDependencyIndex.dependency(dependencyCache, dependencyKey);
+        afterCommit(() -> {
+            try {
+                dependencies.invalidate(dependency);
+            } catch (RuntimeException e) {
+                log.warn("⚠️ Không xóa được các entry phụ thuộc vào {}: {}", dependency, e.getMessage());
+            }
+        });
+    }
+
+    private void evictQuietly(Cache cache, Object key) {
+        try {
+            cache.evict(key);
+            refreshAhead.forget(cache, key);
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Không xóa được cache {}::{}: {}", cache.getName(), key, e.getMessage());
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
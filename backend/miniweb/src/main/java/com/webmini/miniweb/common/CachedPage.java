@@ -0,0 +1,11 @@
+package com.webmini.miniweb.common;
+
+import java.util.List;
+
+/**
+ * Nội dung một trang kết quả tìm kiếm được cache (TaggedPageCache): danh sách dòng và tổng số dòng.
+ */
+public record CachedPage<T>(
+        List<T> content,
+        long total
+) {}
@@ -0,0 +1,85 @@
+package com.webmini.miniweb.common;
+
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Bọc cache Redis bằng {@link CacheCircuitBreaker}: Redis chậm/chết thì đọc coi như miss, còn ghi/xóa được
+ * ghi nhớ để làm lại khi mạch đóng. Request không bao giờ phải chờ hay lỗi vì Redis.
+ */
+public class CircuitBreakingCache implements Cache {
+
+    private final Cache delegate;
+    private final CacheCircuitBreaker breaker;
+
+    CircuitBreakingCache(Cache delegate, CacheCircuitBreaker breaker) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+    }
+
+    /** Cache thật phía sau. */
+    public Cache getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return breaker.execute(() -> delegate.get(key), () -> null);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return breaker.execute(() -> delegate.get(key, type), () -> null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        breaker.run(() -> delegate.put(key, value), () -> breaker.defer(getName(), key));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        return breaker.execute(() -> delegate.putIfAbsent(key, value), () -> {
+            breaker.defer(getName(), key);
+            return null;
+        });
+    }
+
+    @Override
+    public void evict(Object key) {
+        breaker.run(() -> delegate.evict(key), () -> breaker.defer(getName(), key));
+    }
+
+    @Override
+    public void clear() {
+        breaker.run(delegate::clear, () -> breaker.deferClear(getName()));
+    }
+}
@@ -0,0 +1,88 @@
+package com.webmini.miniweb.common;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Đọc CSV theo RFC4180 từng bản ghi một (hỗ trợ "..." chứa dấu phẩy, "" và xuống dòng),
+ * không nạp cả file vào bộ nhớ. BOM UTF-8 ở đầu file (Excel hay thêm) được bỏ qua.
+ */
+public class CsvReader {
+    private final Reader in;
+    private long line = 1;
+    private int peeked = -2;
+    private boolean started;
+
+    public CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /** Dòng (1-based) nơi bản ghi kế tiếp bắt đầu. */
+    public long line() {
+        return line;
+    }
+
+    /** Trả về bản ghi kế tiếp, hoặc null khi hết dữ liệu. */
+    public List<String> next() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Thiếu dấu \" đóng ở dòng " + line);
+                }
+                if (c == '"') {
+                    int n = read();
+                    if (n == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = n;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') line++;
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r') {
+                    int n = read();
+                    if (n != '\n') peeked = n;
+                }
+                if (c != -1) line++;
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    private int read() throws IOException {
+        if (!started) {
+            started = true;
+            int first = in.read();
+            // BOM phải bỏ ở mức ký tự: nếu để lại, "sku" đầu file không còn được coi là trường có ngoặc kép
+            return first == '\uFEFF' ? in.read() : first;
+        }
+        if (peeked != -2) {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        return in.read();
+    }
+}
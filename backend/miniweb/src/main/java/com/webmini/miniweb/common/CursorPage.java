@@ -0,0 +1,19 @@
+package com.webmini.miniweb.common;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Một trang kết quả phân trang theo con trỏ (keyset).
+ * nextCursor = null khi đã tới trang cuối.
+ */
+public record CursorPage<T>(
+        List<T> content,
+        int size,
+        boolean hasNext,
+        String nextCursor
+) {
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+        return new CursorPage<>(content.stream().<R>map(mapper).toList(), size, hasNext, nextCursor);
+    }
+}
@@ -0,0 +1,56 @@
+package com.webmini.miniweb.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Điều kiện tìm theo tên không dấu, dùng chung cho sản phẩm và danh mục: từ dài đi qua FULLTEXT ngram
+ * (MATCH trên name_folded), từ 1 ký tự (VD "iphone 8", "ao thun s") thêm LIKE '%từ%' trên cùng cột,
+ * nên vẫn là tìm chuỗi con như trước chứ không thành tìm tiền tố của cả tên.
+ * <p>
+ * Trong lúc FoldedNameBackfillJob chưa điền xong, dòng có name_folded IS NULL được so bằng LIKE trên cột
+ * name gốc (collation _ai_ci không phân biệt dấu/hoa thường), để không biến mất khỏi kết quả tìm kiếm.
+ */
+public final class FoldedNameFilter {
+
+    private FoldedNameFilter() {}
+
+    /**
+     * @param alias           tiền tố cột, VD "p." hoặc ""
+     * @param includeUnfolded còn dòng chưa có name_folded hay không
+     */
+    public static void apply(SqlWhere where, String alias, String q, boolean includeUnfolded) {
+        String folded = TextNormalizer.fold(q);
+        List<String> words = TextNormalizer.words(folded);
+        if (words.isEmpty()) {
+            return;
+        }
+        List<String> conditions = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        String fullText = TextNormalizer.fullTextQuery(folded);
+        if (fullText != null) {
+            conditions.add("MATCH(" + alias + "name_folded) AGAINST (? IN BOOLEAN MODE)");
+            values.add(fullText);
+        }
+        for (String word : words) {
+            if (TextNormalizer.isShortWord(word)) {
+                conditions.add(alias + "name_folded LIKE ?");
+                values.add(contains(word));
+            }
+        }
+        String condition = String.join(" AND ", conditions);
+        if (includeUnfolded) {
+            List<String> raw = new ArrayList<>();
+            for (String word : words) {
+                raw.add(alias + "name LIKE ?");
+                values.add(contains(word));
+            }
+            condition = "((" + condition + ") OR (" + alias + "name_folded IS NULL AND " + String.join(" AND ", raw) + "))";
+        }
+        where.and(condition, values.toArray());
+    }
+
+    private static String contains(String word) {
+        return "%" + TextNormalizer.escapeLike(word) + "%";
+    }
+}
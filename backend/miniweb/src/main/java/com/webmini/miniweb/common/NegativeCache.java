@@ -0,0 +1,73 @@
+package com.webmini.miniweb.common;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * Tombstone cho id không tồn tại: mỗi cache X có cache anh em "X-missing" (TTL ngắn, chỉ ở Redis)
+ * lưu thông báo NotFoundException của lần tra cứu trước, để id đã xóa/id rác bị gọi lặp lại được trả lời
+ * từ cache thay vì truy vấn MySQL. Chỉ áp dụng cho cache có cấu hình "X-missing" trong RedisConfig.
+ * Lỗi Redis ở đây chỉ làm mất tác dụng tombstone, không làm hỏng request.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NegativeCache {
+
+    private static final String SUFFIX = "-missing";
+
+    private final CacheManager cacheManager;
+    private final CacheBulkEvictor bulkEvictor;
+
+    public static String cacheNameFor(String cacheName) {
+        return cacheName + SUFFIX;
+    }
+
+    /** Thông báo lỗi đã lưu nếu key đang bị đánh dấu không tồn tại, ngược lại null. */
+    public String get(String cacheName, Object key) {
+        Cache tombstones = tombstones(cacheName);
+        if (tombstones == null) {
+            return null;
+        }
+        try {
+            return tombstones.get(key, String.class);
+        } catch (RuntimeException e) {
+            log.debug("Không đọc được tombstone {}::{}: {}", cacheName, key, e.getMessage());
+            return null;
+        }
+    }
+
+    public void put(String cacheName, Object key, String message) {
+        Cache tombstones = tombstones(cacheName);
+        if (tombstones == null) {
+            return;
+        }
+        try {
+            tombstones.put(key, message);
+        } catch (RuntimeException e) {
+            log.debug("Không ghi được tombstone {}::{}: {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    public void clearAll(String cacheName, Collection<?> keys) {
+        if (tombstones(cacheName) == null || keys.isEmpty()) {
+            return;
+        }
+        try {
+            bulkEvictor.evictAll(cacheNameFor(cacheName), keys);
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Không xóa được tombstone của cache {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    private Cache tombstones(String cacheName) {
+        // RedisCacheManager tự tạo cache lạ với TTL mặc định, nên chỉ dùng cache đã được cấu hình sẵn
+        String name = cacheNameFor(cacheName);
+        return cacheManager.getCacheNames().contains(name) ? cacheManager.getCache(name) : null;
+    }
+}
@@ -0,0 +1,152 @@
+package com.webmini.miniweb.common;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Đọc qua cache có chống "dồn cục" khi miss: trong một node, các request cùng key chờ chung một
+ * lần nạp (single-flight); nếu bật cache.lock.enabled thì thêm lock Redis (SET NX PX) để giữa các node
+ * cũng chỉ một node truy vấn DB, các node khác chờ giá trị xuất hiện trong cache tối đa cache.lock.wait.
+ * Khi hit, CacheRefreshAhead có thể làm mới key ở nền trước khi hết hạn. Key không tồn tại được ghi
+ * tombstone (NegativeCache) nên các lần hỏi lại trong TTL ngắn ném NotFoundException mà không chạm DB.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReadThroughCache {
+
+    private static final long LOCK_POLL_MS = 25;
+
+    private final CacheManager cacheManager;
+    private final RedisLocks locks;
+    private final CacheRefreshAhead refreshAhead;
+    private final CacheDependencyIndex dependencies;
+    private final NegativeCache negativeCache;
+    private final CacheAccessTracker accessTracker;
+    private final CacheWriteFence fence;
+
+    @Value("${cache.lock.enabled:false}")
+    private boolean lockEnabled;
+
+    @Value("${cache.lock.ttl:PT5S}")
+    private Duration lockTtl;
+
+    @Value("${cache.lock.wait:PT2S}")
+    private Duration lockWait;
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /** Giá trị trong cache, hoặc nạp bằng loader (chỉ một lần cho mỗi key dù nhiều request cùng miss). */
+    public <T> T get(String cacheName, Object key, Class<T> type, Supplier<T> loader) {
+        accessTracker.record(cacheName, key);
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return loader.get();
+        }
+        T cached = cache.get(key, type);
+        if (cached != null) {
+            refreshAhead.onHit(cache, key, loader);
+            return cached;
+        }
+        String missing = negativeCache.get(cacheName, key);
+        if (missing != null) {
+            throw new NotFoundException(missing);
+        }
+
+        String flightKey = cacheName + "::" + key;
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(flightKey, mine);
+        if (leader != null) {
+            return type.cast(await(leader));
+        }
+        try {
+            T value = load(cache, key, type, loader);
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, mine);
+        }
+    }
+
+    private <T> T load(Cache cache, Object key, Class<T> type, Supplier<T> loader) {
+        // Node khác (hoặc request vừa xong) có thể đã nạp trong lúc ta chờ vào hàng
+        T cached = cache.get(key, type);
+        if (cached != null) {
+            return cached;
+        }
+        if (!lockEnabled) {
+            return loadAndPut(cache, key, loader);
+        }
+
+        String lockKey = RedisLocks.cacheLockKey(cache.getName(), key);
+        String token = locks.tryLock(lockKey, lockTtl);
+        if (token != null) {
+            try {
+                return loadAndPut(cache, key, loader);
+            } finally {
+                locks.unlock(lockKey, token);
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + lockWait.toMillis();
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(LOCK_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            cached = cache.get(key, type);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // Node giữ lock quá chậm hoặc lỗi: tự nạp còn hơn để request chờ mãi
+        return loadAndPut(cache, key, loader);
+    }
+
+    private <T> T loadAndPut(Cache cache, Object key, Supplier<T> loader) {
+        long start = System.nanoTime();
+        long observedVersion = VersionedCache.observe(cache);
+        String fenceStamp = fence.stamp(cache.getName(), key);
+        T value;
+        try {
+            value = loader.get();
+        } catch (NotFoundException e) {
+            if (fence.unchanged(cache.getName(), key, fenceStamp)) {
+                negativeCache.put(cache.getName(), key, e.getMessage());
+            }
+            throw e;
+        }
+        // Key được ghi trong lúc đang nạp thì giá trị vừa đọc có thể đã cũ: trả về nhưng không ghi cache
+        if (value != null && fence.unchanged(cache.getName(), key, fenceStamp) && dependencies.record(cache, key, value)) {
+            VersionedCache.put(cache, key, value, observedVersion);
+            refreshAhead.onLoaded(cache, key, value, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        return value;
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
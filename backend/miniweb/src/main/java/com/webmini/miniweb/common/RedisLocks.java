@@ -0,0 +1,55 @@
+package com.webmini.miniweb.common;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Lock Redis đơn giản (SET NX PX + nhả bằng script so token) cho việc nạp lại cache giữa các node.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RedisLocks {
+
+    private static final DefaultRedisScript<Long> RELEASE_LOCK = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redis;
+    private final CacheCircuitBreaker breaker;
+
+    public static String cacheLockKey(String cacheName, Object key) {
+        return "lock:" + cacheName + "::" + key;
+    }
+
+    /**
+     * Token nếu lấy được lock, null nếu node khác đang giữ.
+     * Redis lỗi thì coi như lấy được để người gọi tự nạp từ DB thay vì chờ.
+     */
+    public String tryLock(String lockKey, Duration ttl) {
+        String token = UUID.randomUUID().toString();
+        try {
+            // Mạch cache đang mở: không chờ lock, tự nạp từ DB
+            return breaker.execute(() -> Boolean.TRUE.equals(redis.opsForValue().setIfAbsent(lockKey, token, ttl)), () -> true)
+                    ? token : null;
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Không lấy được lock cache {}: {}", lockKey, e.getMessage());
+            return token;
+        }
+    }
+
+    public void unlock(String lockKey, String token) {
+        try {
+            breaker.run(() -> redis.execute(RELEASE_LOCK, List.of(lockKey), token), () -> { });
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Không nhả được lock cache {}: {}", lockKey, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.webmini.miniweb.common;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Cache tổng số dòng của một bộ lọc tìm kiếm (TTL ngắn, cấu hình trong RedisConfig).
+ * Dùng cho chế độ count=cached: tổng có thể trễ vài chục giây nhưng không phải COUNT(*) mỗi lần gõ phím.
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchCountCache {
+    public static final String PRODUCT_COUNTS = "productSearchCounts";
+    public static final String CATEGORY_COUNTS = "categorySearchCounts";
+
+    private final CacheManager cacheManager;
+
+    public long get(String cacheName, LongSupplier counter, Object... filters) {
+        String key = Arrays.stream(filters)
+                .map(f -> f instanceof String s ? s.trim().toLowerCase(Locale.ROOT) : Objects.toString(f, ""))
+                .collect(Collectors.joining("|"));
+
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            Cache.ValueWrapper wrapper = cache.get(key);
+            if (wrapper != null && wrapper.get() instanceof Number n) {
+                return n.longValue();
+            }
+        }
+
+        long total = counter.getAsLong();
+        if (cache != null) {
+            cache.put(key, total);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,52 @@
+package com.webmini.miniweb.common;
+
+import jakarta.persistence.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * WHERE động cho native query. clause() đánh số tham số ?1, ?2... (JPA),
+ * jdbcClause() giữ nguyên ? để dùng với JdbcTemplate; cả hai cùng thứ tự params().
+ */
+public final class SqlWhere {
+    private final StringBuilder clause = new StringBuilder(" WHERE 1=1");
+    private final StringBuilder jdbcClause = new StringBuilder(" WHERE 1=1");
+    private final List<Object> params = new ArrayList<>();
+
+    public void and(String condition, Object... values) {
+        StringBuilder sb = new StringBuilder(" AND ");
+        int v = 0;
+        for (char ch : condition.toCharArray()) {
+            sb.append(ch);
+            if (ch == '?') {
+                params.add(values[v++]);
+                sb.append(params.size());
+            }
+        }
+        clause.append(sb);
+        jdbcClause.append(" AND ").append(condition);
+    }
+
+    public String clause() {
+        return clause.toString();
+    }
+
+    public String jdbcClause() {
+        return jdbcClause.toString();
+    }
+
+    public List<Object> params() {
+        return params;
+    }
+
+    public int nextIndex() {
+        return params.size() + 1;
+    }
+
+    public void bind(Query query) {
+        for (int i = 0; i < params.size(); i++) {
+            query.setParameter(i + 1, params.get(i));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.webmini.miniweb.common;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phiên bản theo bảng cho cache đánh phiên bản (VersionedCache), không cần dòng "nóng" trong DB:
+ * <ul>
+ *   <li>bộ đếm Redis {@code cache:table-version:<bảng>}, repository tăng sau commit ở mọi lần ghi của ứng dụng
+ *       ({@link #bump(String)}), kể cả các đường ghi không đi qua cache (saveAll, cascade);</li>
+ *   <li>MAX(updated_at), MAX(id) của bảng (đọc theo index), để bắt câu SQL sửa tay. Câu sửa tay phải đặt
+ *       updated_at = NOW(6); DELETE sửa tay không được phát hiện, entry sống tới hết cache.versioning.ttl.</li>
+ * </ul>
+ * Phiên bản là dấu vân tay của ba giá trị trên, giống nhau ở mọi node. Chỉ chạy khi bật cache.versioning.enabled:
+ * đọc định kỳ (poll-interval) nên {@link #current(String)} chỉ là đọc biến trong bộ nhớ, có thể trễ tối đa một chu kỳ.
+ * Không dùng được cùng read replica: loader đọc replica có thể trễ hơn phiên bản đọc từ primary.
+ */
+@Slf4j
+@Component
+public class TableVersions implements DisposableBean {
+
+    private static final String PREFIX = "cache:table-version:";
+    private static final List<String> TABLES = List.of("products", "categories");
+
+    private final JdbcTemplate jdbc;
+    private final StringRedisTemplate redis;
+    private final CacheCircuitBreaker breaker;
+    private final boolean enabled;
+    private volatile Map<String, Long> versions = Map.of();
+    private final ScheduledExecutorService poller;
+
+    public TableVersions(JdbcTemplate jdbc, StringRedisTemplate redis, CacheCircuitBreaker breaker,
+                         @Value("${cache.versioning.enabled:false}") boolean enabled,
+                         @Value("${cache.versioning.poll-interval:PT0.5S}") Duration pollInterval,
+                         @Value("${datasource.replica.urls:}") List<String> replicaUrls) {
+        this.jdbc = jdbc;
+        this.redis = redis;
+        this.breaker = breaker;
+        this.enabled = enabled;
+        if (!enabled) {
+            this.poller = null;
+            return;
+        }
+        if (replicaUrls.stream().anyMatch(url -> !url.isBlank())) {
+            // Phiên bản đọc ở primary, giá trị nạp từ replica trễ: entry cũ sẽ bị đóng dấu phiên bản mới
+            throw new IllegalStateException("cache.versioning.enabled không dùng được cùng datasource.replica.urls");
+        }
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "table-versions");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = pollInterval.toMillis();
+        poller.scheduleWithFixedDelay(this::poll, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Phiên bản hiện tại của bảng, 0 nếu chưa đọc được. */
+    public long current(String table) {
+        return versions.getOrDefault(table, 0L);
+    }
+
+    /** Gọi ở mọi lần ghi vào bảng; nếu đang trong transaction thì chỉ tăng khi commit. */
+    public void bump(String table) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(table);
+                }
+            });
+        } else {
+            increment(table);
+        }
+    }
+
+    /** updated_at hiện tại của một dòng (truy vấn theo khóa chính), empty nếu dòng không còn. */
+    public Optional<LocalDateTime> rowUpdatedAt(String table, Object id) {
+        try {
+            Timestamp ts = jdbc.queryForObject("SELECT updated_at FROM " + table + " WHERE id = ?", Timestamp.class, id);
+            // Dòng chưa từng được sửa: updated_at NULL, so với LocalDateTime.MIN cho thống nhất
+            return Optional.of(ts != null ? ts.toLocalDateTime() : LocalDateTime.MIN);
+        } catch (EmptyResultDataAccessException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void increment(String table) {
+        try {
+            breaker.run(() -> redis.opsForValue().increment(PREFIX + table), () -> { });
+        } catch (RuntimeException e) {
+            // Cache của chính lần ghi này cũng được put/evict qua Redis nên cùng lỗi, xem CacheCircuitBreaker
+            log.warn("⚠️ Không tăng được phiên bản bảng {}: {}", table, e.getMessage());
+        }
+    }
+
+    private void poll() {
+        try {
+            List<String> counters = breaker.execute(
+                    () -> redis.opsForValue().multiGet(TABLES.stream().map(t -> PREFIX + t).toList()), () -> null);
+            if (counters == null) {
+                // Không đọc được Redis thì giữ phiên bản cũ, lần poll sau thử lại
+                return;
+            }
+            Map<String, Long> next = new HashMap<>();
+            for (int i = 0; i < TABLES.size(); i++) {
+                String table = TABLES.get(i);
+                long counter = counters.get(i) != null ? Long.parseLong(counters.get(i)) : 0;
+                jdbc.query("SELECT MAX(updated_at), MAX(id) FROM " + table,
+                        rs -> { next.put(table, fingerprint(counter, micros(rs.getTimestamp(1)), rs.getLong(2))); });
+            }
+            versions = Map.copyOf(next);
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Không đọc được phiên bản bảng: {}", e.getMessage());
+        }
+    }
+
+    private static long micros(Timestamp ts) {
+        return ts != null ? Math.floorDiv(ts.getTime(), 1000) * 1_000_000 + ts.getNanos() / 1000 : 0;
+    }
+
+    // Trộn kiểu SplitMix64 để hai bộ giá trị khác nhau gần như không bao giờ cho cùng phiên bản; 0 dành cho "chưa xác nhận"
+    private static long fingerprint(long... parts) {
+        long h = 0;
+        for (long part : parts) {
+            h = mix(h ^ part) + 0x9E3779B97F4A7C15L;
+        }
+        return h != 0 ? h : 1;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public void destroy() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.webmini.miniweb.common;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Cache trang kết quả tìm kiếm theo bộ (bộ lọc đã chuẩn hóa, sort, page, size), gắn tag.
+ * Tag là một bộ đếm trong Redis ({@code cache:tag:<tag>}); phiên bản hiện tại của các tag nằm luôn trong key
+ * của trang, nên vô hiệu hóa một tag chỉ là một lệnh INCR: các trang gắn tag đó không bao giờ được đọc lại
+ * và tự hết hạn theo TTL. Tag dùng: cả bảng ({@link #tableTag}) cho trang không lọc theo danh mục,
+ * và từng danh mục ({@link #tag}) cho trang có lọc theo danh mục, để ghi một sản phẩm chỉ làm mất
+ * các trang của danh mục đó và các trang không lọc.
+ */
+@Component
+@RequiredArgsConstructor
+public class TaggedPageCache {
+
+    public static final String PRODUCT_PAGES = "productPages";
+    public static final String CATEGORY_PAGES = "categoryPages";
+    private static final String TAG_PREFIX = "cache:tag:";
+
+    private final ReadThroughCache readThrough;
+    private final StringRedisTemplate redis;
+    private final CacheCircuitBreaker breaker;
+
+    @Value("${cache.search-pages.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.search-pages.max-page:5}")
+    private int maxPage;
+
+    public static String tableTag(String table) {
+        return table;
+    }
+
+    public static String tag(String table, String column, Object value) {
+        return table + ":" + column + "=" + value;
+    }
+
+    /**
+     * Trang trong cache nếu có, ngược lại chạy loader và cache kết quả. Chỉ cache vài trang đầu;
+     * Redis lỗi (không đọc được phiên bản tag) thì chạy thẳng loader.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Page<T> get(String cacheName, List<String> tags, Pageable pageable, Supplier<Page<T>> loader,
+                           Object... filters) {
+        if (!enabled || pageable.getPageNumber() >= maxPage) {
+            return loader.get();
+        }
+        List<String> versions = tagVersions(tags);
+        if (versions == null) {
+            return loader.get();
+        }
+        String key = key(pageable, filters) + "|v=" + String.join(",", versions);
+        CachedPage<T> cached = readThrough.get(cacheName, key, CachedPage.class, () -> {
+            Page<T> page = loader.get();
+            return new CachedPage<>(page.getContent(), page.getTotalElements());
+        });
+        return new PageImpl<>(cached.content(), pageable, cached.total());
+    }
+
+    /** Làm mất mọi trang của cacheName gắn một trong các tag. */
+    public void invalidate(String cacheName, Collection<String> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+        breaker.run(() -> redis.executePipelined((RedisCallback<Object>) conn -> {
+            tags.forEach(tag -> conn.stringCommands().incr((TAG_PREFIX + tag).getBytes(StandardCharsets.UTF_8)));
+            return null;
+            // Không tăng được tag: khi Redis hoạt động lại thì xóa hẳn cache trang
+        }), () -> breaker.deferClear(cacheName));
+    }
+
+    private List<String> tagVersions(List<String> tags) {
+        List<String> tagKeys = tags.stream().map(tag -> TAG_PREFIX + tag).toList();
+        List<String> values = breaker.execute(() -> redis.opsForValue().multiGet(tagKeys), () -> null);
+        return values == null ? null : values.stream().map(v -> v != null ? v : "0").toList();
+    }
+
+    private static String key(Pageable pageable, Object... filters) {
+        String filterKey = Arrays.stream(filters)
+                .map(f -> f instanceof String s ? s.trim().toLowerCase(Locale.ROOT) : Objects.toString(f, ""))
+                .collect(Collectors.joining("|"));
+        String sortKey = pageable.getSort().stream()
+                .map(o -> o.getProperty() + "," + o.getDirection().name().toLowerCase(Locale.ROOT))
+                .collect(Collectors.joining(";"));
+        return filterKey + "|p=" + pageable.getPageNumber() + "|s=" + pageable.getPageSize() + "|o=" + sortKey;
+    }
+}
@@ -0,0 +1,64 @@
+package com.webmini.miniweb.common;
+
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Chuẩn hóa chuỗi cho tìm kiếm không dấu: "Áo Sơ Mi  Đỏ" -> "ao so mi do".
+ * Dùng chung cho giá trị lưu trong cột name_folded và cho từ khóa tìm kiếm.
+ */
+public final class TextNormalizer {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final int NGRAM_TOKEN_SIZE = 2;
+    private static final Pattern BOOLEAN_OPERATORS = Pattern.compile("[+\\-<>()~*\"@]");
+
+    private TextNormalizer() {}
+
+    public static String fold(String s) {
+        if (s == null) {
+            return null;
+        }
+        // đ/Đ không tách được bằng NFD nên phải thay tay
+        String decomposed = Normalizer.normalize(s.replace('đ', 'd').replace('Đ', 'D'), Normalizer.Form.NFD);
+        return SPACES.matcher(MARKS.matcher(decomposed).replaceAll("")).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Các từ của chuỗi đã fold, bỏ ký tự toán tử của BOOLEAN MODE. */
+    public static List<String> words(String folded) {
+        if (folded == null || folded.isBlank()) {
+            return List.of();
+        }
+        String cleaned = BOOLEAN_OPERATORS.matcher(folded).replaceAll(" ").trim();
+        return cleaned.isEmpty() ? List.of() : List.of(SPACES.split(cleaned));
+    }
+
+    /** Từ ngắn hơn ngram_token_size (= 2, đếm theo code point): FULLTEXT ngram không tìm được, phải dùng LIKE. */
+    public static boolean isShortWord(String word) {
+        return word.codePointCount(0, word.length()) < NGRAM_TOKEN_SIZE;
+    }
+
+    /**
+     * Truy vấn FULLTEXT BOOLEAN MODE cho từ khóa đã fold: mỗi từ là một cụm bắt buộc (+"từ"),
+     * với parser ngram tương đương tìm chuỗi con. Từ ngắn (xem {@link #isShortWord}) bị bỏ qua;
+     * trả về null nếu không còn từ nào.
+     */
+    public static String fullTextQuery(String folded) {
+        StringBuilder sb = new StringBuilder();
+        for (String word : words(folded)) {
+            if (isShortWord(word)) {
+                continue;
+            }
+            if (!sb.isEmpty()) sb.append(' ');
+            sb.append("+\"").append(word).append('"');
+        }
+        return sb.isEmpty() ? null : sb.toString();
+    }
+
+    public static String escapeLike(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
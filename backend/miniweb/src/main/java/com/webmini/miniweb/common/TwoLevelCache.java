@@ -0,0 +1,201 @@
+package com.webmini.miniweb.common;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.cache.RedisCache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cache hai tầng: L1 Caffeine trong process (W-TinyLFU, giữ sẵn object đã giải mã) đứng trước L2 Redis.
+ * Mọi thao tác ghi/xóa đi xuống Redis rồi phát message để các node khác bỏ key khỏi L1 của mình.
+ * Key trong L1 là dạng chuỗi giống key Redis, để message từ node khác khớp được.
+ * <p>
+ * Nạp L1 từ giá trị vừa đọc ở Redis có thể chạy đua với message hủy đến giữa lúc đọc và lúc nạp.
+ * Mỗi lần hủy tăng "thế hệ" của key (theo stripe) trước khi bỏ key khỏi L1; người nạp lấy thế hệ trước khi đọc,
+ * nạp xong thì so lại và tự bỏ key nếu thế hệ đã đổi, nên giá trị cũ không sống trong L1 tới hết l1 TTL.
+ */
+public class TwoLevelCache implements org.springframework.cache.Cache {
+
+    private final org.springframework.cache.Cache l2;
+    private final Cache<String, ValueWrapper> l1;
+    private final TwoLevelCacheManager manager;
+
+    private static final int STRIPES = 1024;
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    private final AtomicLong clears = new AtomicLong();
+
+    TwoLevelCache(org.springframework.cache.Cache l2, Cache<String, ValueWrapper> l1, TwoLevelCacheManager manager) {
+        this.l2 = l2;
+        this.l1 = l1;
+        this.manager = manager;
+    }
+
+    @Override
+    public String getName() {
+        return l2.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return l2.getNativeCache();
+    }
+
+    /** Cache Redis phía sau (dùng cho thao tác hàng loạt như CacheBulkEvictor). */
+    public org.springframework.cache.Cache getL2() {
+        return l2;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String k = key(key);
+        ValueWrapper local = l1.getIfPresent(k);
+        if (local != null) {
+            return local;
+        }
+        long stamp = stamp(key);
+        ValueWrapper remote = l2.get(key);
+        if (remote != null) {
+            // Giữ bản đã giải mã, không giữ wrapper của Redis
+            putLocal(key, remote.get(), stamp);
+        }
+        return remote;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        long stamp = stamp(key);
+        T value = l2.get(key, valueLoader);
+        putLocal(key, value, stamp);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        l2.put(key, value);
+        // Người đang nạp giá trị cũ (đọc trước lần ghi này) sẽ thấy thế hệ đổi và bỏ qua
+        bump(key(key));
+        l1.put(key(key), new SimpleValueWrapper(value));
+        manager.publishEvict(getName(), key(key));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = l2.putIfAbsent(key, value);
+        invalidate(key(key));
+        if (existing == null) {
+            manager.publishEvict(getName(), key(key));
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        l2.evict(key);
+        invalidate(key(key));
+        manager.publishEvict(getName(), key(key));
+    }
+
+    @Override
+    public void clear() {
+        l2.clear();
+        clearLocal();
+        manager.publishClear(getName());
+    }
+
+    /** Bỏ nhiều key khỏi L1 ở mọi node; phía Redis do người gọi tự xóa. */
+    public void evictLocal(Collection<?> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<String> localKeys = keys.stream().map(TwoLevelCache::key).toList();
+        invalidateLocal(localKeys);
+        manager.publishEvict(getName(), localKeys.toArray(String[]::new));
+    }
+
+    /** Chỉ đọc L1 (không xuống Redis). */
+    ValueWrapper getLocal(Object key) {
+        return l1.getIfPresent(key(key));
+    }
+
+    /** Thế hệ hiện tại của key: lấy trước khi đọc Redis/DB, truyền lại cho {@link #putLocal}. */
+    long stamp(Object key) {
+        return generations.get(stripe(key(key))) + clears.get();
+    }
+
+    /**
+     * Chỉ ghi L1, không phát message. Nếu key bị hủy kể từ lúc lấy stamp thì bỏ giá trị vừa ghi:
+     * hủy luôn tăng thế hệ trước khi xóa L1, nên hoặc lần kiểm tra này thấy, hoặc lần xóa đó đến sau lần ghi.
+     */
+    void putLocal(Object key, Object value, long stamp) {
+        String k = key(key);
+        l1.put(k, new SimpleValueWrapper(value));
+        if (stamp(key) != stamp) {
+            l1.invalidate(k);
+        }
+    }
+
+    void invalidateLocal(Collection<String> keys) {
+        keys.forEach(this::bump);
+        l1.invalidateAll(keys);
+    }
+
+    void clearLocal() {
+        clears.incrementAndGet();
+        l1.invalidateAll();
+    }
+
+    private void invalidate(String k) {
+        bump(k);
+        l1.invalidate(k);
+    }
+
+    private void bump(String k) {
+        generations.incrementAndGet(stripe(k));
+    }
+
+    private static int stripe(String k) {
+        return (k.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    /** Tầng L1 của cache (bỏ qua VersionedCache bọc ngoài nếu có), hoặc null nếu cache không có L1. */
+    static TwoLevelCache twoLevelOf(org.springframework.cache.Cache cache) {
+        org.springframework.cache.Cache c = cache instanceof VersionedCache versioned ? versioned.getDelegate() : cache;
+        return c instanceof TwoLevelCache twoLevel ? twoLevel : null;
+    }
+
+    /** RedisCache nằm dưới cache này (bỏ qua phiên bản, tầng L1 và circuit breaker nếu có), hoặc null nếu không phải Redis. */
+    static RedisCache redisCacheOf(org.springframework.cache.Cache cache) {
+        TwoLevelCache twoLevel = twoLevelOf(cache);
+        org.springframework.cache.Cache c = twoLevel != null ? twoLevel.getL2()
+                : cache instanceof VersionedCache versioned ? versioned.getDelegate() : cache;
+        if (c instanceof CircuitBreakingCache breaking) {
+            c = breaking.getDelegate();
+        }
+        return c instanceof RedisCache redisCache ? redisCache : null;
+    }
+
+    private static String key(Object key) {
+        return String.valueOf(key);
+    }
+}
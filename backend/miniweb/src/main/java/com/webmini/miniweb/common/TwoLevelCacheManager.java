@@ -0,0 +1,187 @@
+package com.webmini.miniweb.common;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * CacheManager bọc RedisCacheManager: các cache có tên trong l1CacheNames được thêm tầng L1 trong process
+ * (xem TwoLevelCache), các cache khác đi thẳng Redis như cũ. Đồng bộ L1 giữa các node qua Redis pub/sub
+ * trên kênh {@link #CHANNEL}; message của chính node này bị bỏ qua. Các bản sao trong bộ nhớ khác
+ * (VD CategoryDictionary) dùng chung kênh qua {@link #broadcastEvict}/{@link #onRemoteEvict}.
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    public static final String CHANNEL = "cache:l1-invalidate";
+    private static final String EVICT = "E";
+    private static final String CLEAR = "C";
+
+    private final CacheManager l2;
+    private final StringRedisTemplate redis;
+    private final Set<String> l1CacheNames;
+    private final long l1MaximumSize;
+    private final Duration l1Ttl;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final CacheCircuitBreaker breaker;
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+    private final Map<String, CircuitBreakingCache> remoteCaches = new ConcurrentHashMap<>();
+    private final Map<String, Function<Cache, VersionedCache>> versionedFactories = new ConcurrentHashMap<>();
+    private final Map<String, VersionedCache> versionedCaches = new ConcurrentHashMap<>();
+    private final Map<String, Consumer<List<String>>> remoteEvictHandlers = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager l2, StringRedisTemplate redis, CacheCircuitBreaker breaker,
+                                Set<String> l1CacheNames, long l1MaximumSize, Duration l1Ttl) {
+        this.l2 = l2;
+        this.redis = redis;
+        this.breaker = breaker;
+        this.l1CacheNames = l1CacheNames;
+        this.l1MaximumSize = l1MaximumSize;
+        this.l1Ttl = l1Ttl;
+        breaker.onRecovery(this::recover);
+    }
+
+    /**
+     * Đánh phiên bản các entry của cacheName theo bảng table (xem VersionedCache);
+     * updatedAtOf lấy updated_at từ giá trị được cache.
+     */
+    public TwoLevelCacheManager versioned(String cacheName, TableVersions versions, String table,
+                                          Function<Object, LocalDateTime> updatedAtOf) {
+        versionedFactories.put(cacheName, cache -> new VersionedCache(cache, versions, table, updatedAtOf));
+        return this;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Function<Cache, VersionedCache> factory = versionedFactories.get(name);
+        if (factory == null) {
+            return unversioned(name);
+        }
+        VersionedCache cache = versionedCaches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache inner = unversioned(name);
+        return inner != null ? versionedCaches.computeIfAbsent(name, n -> factory.apply(inner)) : null;
+    }
+
+    private Cache unversioned(String name) {
+        if (!l1CacheNames.contains(name)) {
+            return remote(name);
+        }
+        TwoLevelCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache remote = remote(name);
+        if (remote == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, n -> new TwoLevelCache(remote,
+                Caffeine.newBuilder()
+                        .maximumSize(l1MaximumSize)
+                        .expireAfterWrite(l1Ttl)
+                        .build(),
+                this));
+    }
+
+    private Cache remote(String name) {
+        CircuitBreakingCache cache = remoteCaches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache remote = l2.getCache(name);
+        return remote != null ? remoteCaches.computeIfAbsent(name, n -> new CircuitBreakingCache(remote, breaker)) : null;
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return l2.getCacheNames();
+    }
+
+    /**
+     * Đăng ký xử lý message hủy cho một bản sao trong bộ nhớ không phải cache của manager này
+     * (tên không được trùng tên cache L1); handler chạy trên luồng của listener container.
+     */
+    public void onRemoteEvict(String name, Consumer<List<String>> handler) {
+        remoteEvictHandlers.put(name, handler);
+    }
+
+    /** Báo các node khác bỏ các key của bản sao name (đã đăng ký qua onRemoteEvict ở các node đó). */
+    public void broadcastEvict(String name, String... keys) {
+        publishEvict(name, keys);
+    }
+
+    void publishEvict(String cacheName, String... keys) {
+        publish(EVICT + "\n" + cacheName + "\n" + String.join("\n", keys));
+    }
+
+    void publishClear(String cacheName) {
+        publish(CLEAR + "\n" + cacheName);
+    }
+
+    private void publish(String body) {
+        try {
+            breaker.run(() -> redis.convertAndSend(CHANNEL, nodeId + "\n" + body), () -> { });
+        } catch (RuntimeException e) {
+            // L1 ở node khác sẽ tự hết hạn theo l1Ttl
+            log.warn("⚠️ Không gửi được message hủy cache L1: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Redis vừa hoạt động lại: trong lúc mất kết nối, L1 có thể đã lỡ message hủy từ node khác nên bỏ hết,
+     * rồi xóa ở Redis các key đã ghi/xóa dở trong lúc mạch mở.
+     */
+    private void recover(CacheCircuitBreaker.Recovery recovery) {
+        caches.values().forEach(TwoLevelCache::clearLocal);
+        recovery.clears().forEach(name -> {
+            Cache cache = getCache(name);
+            if (cache != null) cache.clear();
+        });
+        recovery.evicts().forEach((name, keys) -> {
+            Cache cache = getCache(name);
+            if (cache != null && !recovery.clears().contains(name)) keys.forEach(cache::evict);
+        });
+        log.info("Đã đồng bộ lại cache sau sự cố Redis: xóa {} cache, {} key", recovery.clears().size(),
+                recovery.evicts().values().stream().mapToInt(Set::size).sum());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        List<String> parts = Arrays.asList(new String(message.getBody(), StandardCharsets.UTF_8).split("\n"));
+        if (parts.size() < 3 || parts.get(0).equals(nodeId)) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(parts.get(2));
+        if (cache == null) {
+            Consumer<List<String>> handler = remoteEvictHandlers.get(parts.get(2));
+            if (handler != null && EVICT.equals(parts.get(1))) {
+                handler.accept(parts.subList(3, parts.size()));
+            }
+            return;
+        }
+        if (CLEAR.equals(parts.get(1))) {
+            cache.clearLocal();
+        } else {
+            cache.invalidateLocal(parts.subList(3, parts.size()));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.webmini.miniweb.common;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * Cache mà mỗi entry mang phiên bản bảng lúc đọc DB (VersionedValue). Khi hit:
+ * <ul>
+ *   <li>phiên bản bảng chưa đổi: bảng không có ghi nào kể từ lúc nạp, entry còn đúng (chỉ đọc biến trong bộ nhớ);</li>
+ *   <li>phiên bản đã đổi: so updated_at của entry với updated_at của dòng (một truy vấn theo khóa chính,
+ *       không đọc lại cả dòng). Khớp thì đóng dấu phiên bản mới, lệch hoặc dòng đã mất thì xóa entry (coi như miss).</li>
+ * </ul>
+ * Nhờ vậy các đường ghi không đi qua cache (saveAll của listener, cascade, SQL sửa tay có đặt updated_at) cũng bị phát hiện,
+ * và TTL có thể để dài. Ai nạp giá trị từ DB thì nên lấy {@link #observe(Cache)} trước khi đọc DB rồi ghi bằng
+ * {@link #put(Cache, Object, Object, long)}; put thường đóng dấu 0 (chưa xác nhận).
+ */
+@Slf4j
+public class VersionedCache implements Cache {
+
+    /** updated_at ghi từ Java có thể chênh vài micro giây so với giá trị MySQL lưu (làm tròn). */
+    private static final Duration TOLERANCE = Duration.ofMillis(1);
+
+    private final Cache delegate;
+    private final TableVersions versions;
+    private final String table;
+    private final Function<Object, LocalDateTime> updatedAtOf;
+
+    VersionedCache(Cache delegate, TableVersions versions, String table, Function<Object, LocalDateTime> updatedAtOf) {
+        this.delegate = delegate;
+        this.versions = versions;
+        this.table = table;
+        this.updatedAtOf = updatedAtOf;
+    }
+
+    /** Phiên bản bảng hiện tại của cache, 0 nếu cache không đánh phiên bản. Lấy trước khi đọc DB. */
+    public static long observe(Cache cache) {
+        return cache instanceof VersionedCache versioned ? versioned.currentVersion() : 0;
+    }
+
+    /** Ghi giá trị vừa đọc từ DB, đóng dấu phiên bản đã quan sát trước khi đọc. */
+    public static void put(Cache cache, Object key, Object value, long observedVersion) {
+        if (cache instanceof VersionedCache versioned) {
+            versioned.delegate.put(key, new VersionedValue<>(observedVersion, value));
+        } else {
+            cache.put(key, value);
+        }
+    }
+
+    public Cache getDelegate() {
+        return delegate;
+    }
+
+    public long currentVersion() {
+        return versions.current(table);
+    }
+
+    /** Giá trị thật nếu entry (dạng VersionedValue) còn đúng phiên bản hiện tại; không truy vấn DB. */
+    public Object currentOrNull(Object raw) {
+        return raw instanceof VersionedValue<?> v && v.tableVersion() != 0 && v.tableVersion() == currentVersion()
+                ? v.value() : null;
+    }
+
+    /** Dạng lưu trong tầng dưới của một giá trị đọc từ DB. */
+    public Object wrap(Object value, long observedVersion) {
+        return new VersionedValue<>(observedVersion, value);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper wrapper = delegate.get(key);
+        if (wrapper == null) {
+            return null;
+        }
+        Object value = validate(key, wrapper.get());
+        return value != null ? new SimpleValueWrapper(value) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        long observed = currentVersion();
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(this, key, value, observed);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, new VersionedValue<>(0, value));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = delegate.putIfAbsent(key, new VersionedValue<>(0, value));
+        return existing != null && existing.get() instanceof VersionedValue<?> v ? new SimpleValueWrapper(v.value()) : existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    private Object validate(Object key, Object raw) {
+        if (!(raw instanceof VersionedValue<?> entry)) {
+            return raw;
+        }
+        long current = currentVersion();
+        if (entry.tableVersion() != 0 && entry.tableVersion() == current) {
+            return entry.value();
+        }
+        Optional<LocalDateTime> rowUpdatedAt;
+        try {
+            rowUpdatedAt = versions.rowUpdatedAt(table, key);
+        } catch (RuntimeException e) {
+            // Không kiểm tra được thì vẫn trả entry như chế độ không đánh phiên bản
+            log.debug("Không kiểm tra được phiên bản {}::{}: {}", table, key, e.getMessage());
+            return entry.value();
+        }
+        if (rowUpdatedAt.isPresent() && sameVersion(updatedAtOf.apply(entry.value()), rowUpdatedAt.get())) {
+            if (current != 0) {
+                delegate.put(key, new VersionedValue<>(current, entry.value()));
+            }
+            return entry.value();
+        }
+        delegate.evict(key);
+        return null;
+    }
+
+    private static boolean sameVersion(LocalDateTime cached, LocalDateTime row) {
+        LocalDateTime a = Objects.requireNonNullElse(cached, LocalDateTime.MIN);
+        return a.equals(row) || Duration.between(a, row).abs().compareTo(TOLERANCE) < 0;
+    }
+}
@@ -0,0 +1,7 @@
+package com.webmini.miniweb.common;
+
+/**
+ * Giá trị cache kèm phiên bản bảng (TableVersions) tại thời điểm đọc từ DB.
+ * tableVersion = 0 nghĩa là chưa xác nhận, lần hit đầu sẽ kiểm tra updated_at của dòng.
+ */
+public record VersionedValue<T>(long tableVersion, T value) {}
@@ -0,0 +1,73 @@
+package com.webmini.miniweb.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chỉ bật khi có datasource.replica.urls: spring.datasource.* là primary, các URL trong
+ * datasource.replica.urls là replica (dùng chung username/password nếu không khai báo riêng).
+ * Không khai báo replica thì Spring Boot tự cấu hình một datasource như trước.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replica.urls")
+public class DataSourceConfig {
+
+    @Value("${datasource.replica.urls}")
+    private List<String> replicaUrls;
+
+    @Value("${datasource.replica.username:${spring.datasource.username}}")
+    private String replicaUsername;
+
+    @Value("${datasource.replica.password:${spring.datasource.password}}")
+    private String replicaPassword;
+
+    @Value("${datasource.replica.maximum-pool-size:10}")
+    private int replicaPoolSize;
+
+    /** Khoảng thời gian (ms) sau một lần ghi mà client đó vẫn đọc từ primary. */
+    @Value("${datasource.read-your-writes-ms:2000}")
+    private long readYourWritesMs;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource ds = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        ds.setPoolName("primary");
+        return ds;
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReadReplicaRoutingDataSource routingDataSource(HikariDataSource primaryDataSource, DataSourceProperties properties) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setJdbcUrl(replicaUrls.get(i).trim());
+            replica.setUsername(replicaUsername);
+            replica.setPassword(replicaPassword);
+            replica.setMaximumPoolSize(replicaPoolSize);
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        return new ReadReplicaRoutingDataSource(primaryDataSource, replicas, readYourWritesMs);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadReplicaRoutingDataSource routingDataSource) {
+        // Lấy connection trễ tới câu SQL đầu tiên, lúc đó cờ readOnly của transaction đã có
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -0,0 +1,119 @@
+package com.webmini.miniweb.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transaction readOnly đi tới replica ít tải nhất (ít connection đang dùng + đang chờ nhất),
+ * mọi thứ khác đi tới primary. Sau khi một client (user đăng nhập, hoặc IP) commit transaction ghi,
+ * các lần đọc của client đó vẫn đi primary trong readYourWritesMs để không đọc phải dữ liệu cũ do replica trễ.
+ * Phải được bọc trong LazyConnectionDataSourceProxy để connection chỉ được lấy khi cờ readOnly đã được đặt.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private static final String PRIMARY = "primary";
+    private static final int STICKY_CLEANUP_THRESHOLD = 10_000;
+
+    private final List<HikariDataSource> replicas;
+    private final long readYourWritesMs;
+    private final Map<String, Long> lastWriteAt = new ConcurrentHashMap<>();
+
+    public ReadReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, long readYourWritesMs) {
+        this.replicas = replicas;
+        this.readYourWritesMs = readYourWritesMs;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String client = clientKey();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (client != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        markWrite(client);
+                    }
+                });
+            }
+            return PRIMARY;
+        }
+        if (replicas.isEmpty() || (client != null && isSticky(client))) {
+            return PRIMARY;
+        }
+        return leastLoadedReplica();
+    }
+
+    private int leastLoadedReplica() {
+        int best = 0;
+        int bestLoad = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            HikariPoolMXBean pool = replicas.get(i).getHikariPoolMXBean();
+            int load = pool == null ? 0 : pool.getActiveConnections() + pool.getThreadsAwaitingConnection();
+            if (load < bestLoad) {
+                best = i;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    private boolean isSticky(String client) {
+        Long at = lastWriteAt.get(client);
+        if (at == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - at < readYourWritesMs) {
+            return true;
+        }
+        lastWriteAt.remove(client, at);
+        return false;
+    }
+
+    private void markWrite(String client) {
+        long now = System.currentTimeMillis();
+        lastWriteAt.put(client, now);
+        if (lastWriteAt.size() > STICKY_CLEANUP_THRESHOLD) {
+            lastWriteAt.values().removeIf(at -> now - at >= readYourWritesMs);
+        }
+    }
+
+    private static String clientKey() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)) {
+            return "user:" + auth.getName();
+        }
+        RequestAttributes attrs = RequestContextHolder.getRequestAttributes();
+        if (attrs instanceof ServletRequestAttributes servlet) {
+            return "ip:" + servlet.getRequest().getRemoteAddr();
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        // primary là bean riêng, Spring tự đóng
+        replicas.forEach(HikariDataSource::close);
+    }
+}
@@ -1,19 +1,40 @@
 package com.webmini.miniweb.config;
 
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.webmini.miniweb.common.CacheBulkEvictor;
+import com.webmini.miniweb.common.CacheCircuitBreaker;
+import com.webmini.miniweb.common.CacheDependencyIndex;
+import com.webmini.miniweb.common.NegativeCache;
+import com.webmini.miniweb.common.CachedPage;
+import com.webmini.miniweb.common.SearchCountCache;
+import com.webmini.miniweb.common.TaggedPageCache;
+import com.webmini.miniweb.common.TableVersions;
+import com.webmini.miniweb.common.VersionedValue;
+import com.webmini.miniweb.common.TwoLevelCacheManager;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.webmini.miniweb.catalog.category.dto.CategoryDtos;
+import com.webmini.miniweb.catalog.product.dto.ProductDtos;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.Set;
 
 
 @Configuration
@@ -21,7 +42,16 @@ import java.time.Duration;
 public class RedisConfig {
 
     @Bean
-    public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                             StringRedisTemplate redis,
+                                             CacheCircuitBreaker breaker,
+                                             @Value("${cache.l1.cache-names:products,categories}") Set<String> l1CacheNames,
+                                             @Value("${cache.l1.maximum-size:10000}") long l1MaximumSize,
+                                             @Value("${cache.l1.ttl:PT5M}") Duration l1Ttl,
+                                             @Value("${cache.negative.ttl:PT30S}") Duration negativeTtl,
+                                             TableVersions tableVersions,
+                                             @Value("${cache.versioning.ttl:PT6H}") Duration versionedTtl,
+                                             @Value("${cache.search-pages.ttl:PT1M}") Duration pageTtl) {
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
@@ -37,8 +67,94 @@ public class RedisConfig {
                         )
                 );
 
-        return RedisCacheManager.builder(connectionFactory)
+        // Cache có kiểu cố định dùng Smile (JSON nhị phân) không kèm @class: nhỏ hơn và giải mã thẳng ra record.
+        // Prefix "v2" để không đọc nhầm các entry JSON cũ còn trong Redis.
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+        smileMapper.registerModule(new JavaTimeModule());
+        RedisCacheConfiguration typedConfig = config.computePrefixWith(name -> name + ":v2::");
+
+        // Tổng số dòng của bộ lọc tìm kiếm chỉ cần gần đúng, TTL ngắn
+        RedisCacheConfiguration countConfig = typed(typedConfig, smileMapper, Long.class).entryTtl(Duration.ofMinutes(1));
+
+        // Tombstone cho id không tồn tại (xem NegativeCache): TTL ngắn để id mới tạo ở node khác không bị che lâu
+        RedisCacheConfiguration missingConfig = typed(typedConfig, smileMapper, String.class).entryTtl(negativeTtl);
+
+        // Chế độ đánh phiên bản: entry là VersionedValue (prefix "v3"), được kiểm tra với TableVersions/updated_at
+        // mỗi lần hit nên TTL dài được
+        boolean versioning = tableVersions.isEnabled();
+        RedisCacheConfiguration productConfig = versioning
+                ? versioned(typedConfig, smileMapper, ProductDtos.ProductResponse.class).entryTtl(versionedTtl)
+                : typed(typedConfig, smileMapper, ProductDtos.ProductResponse.class);
+        RedisCacheConfiguration categoryConfig = versioning
+                ? versioned(typedConfig, smileMapper, CategoryDtos.CategoryResponse.class).entryTtl(versionedTtl)
+                : typed(typedConfig, smileMapper, CategoryDtos.CategoryResponse.class);
+
+        // Trang kết quả tìm kiếm (TaggedPageCache): key đã chứa phiên bản tag, TTL chỉ để dọn trang cũ
+        TypeFactory types = smileMapper.getTypeFactory();
+        RedisCacheConfiguration productPageConfig = typed(typedConfig, smileMapper,
+                types.constructParametricType(CachedPage.class, ProductDtos.ProductResponse.class)).entryTtl(pageTtl);
+        RedisCacheConfiguration categoryPageConfig = typed(typedConfig, smileMapper,
+                types.constructParametricType(CachedPage.class, CategoryDtos.CategoryResponse.class)).entryTtl(pageTtl);
+
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(config)
+                .withCacheConfiguration("products", productConfig)
+                .withCacheConfiguration("categories", categoryConfig)
+                .withCacheConfiguration(NegativeCache.cacheNameFor("products"), missingConfig)
+                .withCacheConfiguration(NegativeCache.cacheNameFor("categories"), missingConfig)
+                .withCacheConfiguration(TaggedPageCache.PRODUCT_PAGES, productPageConfig)
+                .withCacheConfiguration(TaggedPageCache.CATEGORY_PAGES, categoryPageConfig)
+                .withCacheConfiguration(SearchCountCache.PRODUCT_COUNTS, countConfig)
+                .withCacheConfiguration(SearchCountCache.CATEGORY_COUNTS, countConfig)
                 .build();
+        redisCacheManager.initializeCaches();
+
+        TwoLevelCacheManager cacheManager =
+                new TwoLevelCacheManager(redisCacheManager, redis, breaker, l1CacheNames, l1MaximumSize, l1Ttl);
+        if (versioning) {
+            cacheManager
+                    .versioned("products", tableVersions, "products",
+                            value -> ((ProductDtos.ProductResponse) value).updatedAt())
+                    .versioned("categories", tableVersions, "categories",
+                            value -> ((CategoryDtos.CategoryResponse) value).updatedAt());
+        }
+        return cacheManager;
+    }
+
+    private static RedisCacheConfiguration typed(RedisCacheConfiguration base, ObjectMapper mapper, JavaType type) {
+        return base.serializeValuesWith(
+                RedisSerializationContext.SerializationPair.fromSerializer(new Jackson2JsonRedisSerializer<>(mapper, type)));
+    }
+
+    private static <T> RedisCacheConfiguration versioned(RedisCacheConfiguration base, ObjectMapper mapper, Class<T> type) {
+        JavaType javaType = mapper.getTypeFactory().constructParametricType(VersionedValue.class, type);
+        return base.computePrefixWith(name -> name + ":v3::")
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
+                        new Jackson2JsonRedisSerializer<>(mapper, javaType)));
+    }
+
+    private static <T> RedisCacheConfiguration typed(RedisCacheConfiguration base, ObjectMapper mapper, Class<T> type) {
+        return base.serializeValuesWith(
+                RedisSerializationContext.SerializationPair.fromSerializer(new Jackson2JsonRedisSerializer<>(mapper, type)));
+    }
+
+    /** ProductResponse nhúng categoryName nên phụ thuộc vào entry categories::categoryId. */
+    @Bean
+    public CacheDependencyIndex cacheDependencyIndex(StringRedisTemplate redis, CacheBulkEvictor bulkEvictor,
+                                                     CacheCircuitBreaker breaker) {
+        return new CacheDependencyIndex(redis, bulkEvictor, breaker)
+                .track("products", value -> value instanceof ProductDtos.ProductResponse p && p.categoryId() != null
+                        ? CacheDependencyIndex.dependency("categories", p.categoryId())
+                        : null);
+    }
+
+    /** Nhận message hủy L1 từ các node khác. */
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListener(RedisConnectionFactory connectionFactory,
+                                                                   TwoLevelCacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheManager, new ChannelTopic(TwoLevelCacheManager.CHANNEL));
+        return container;
     }
 }
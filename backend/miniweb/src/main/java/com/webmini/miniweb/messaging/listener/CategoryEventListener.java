@@ -1,14 +1,16 @@
 package com.webmini.miniweb.messaging.listener;
 
-import com.webmini.miniweb.catalog.product.entity.Product;
+import com.webmini.miniweb.catalog.category.repo.CategoryDictionary;
 import com.webmini.miniweb.catalog.product.repo.ProductRepository;
+import com.webmini.miniweb.catalog.product.service.ProductPageTags;
+import com.webmini.miniweb.common.CacheWriteThrough;
+import com.webmini.miniweb.common.TaggedPageCache;
 import com.webmini.miniweb.config.RabbitMQConfig;
 import com.webmini.miniweb.messaging.dto.CategoryEventMessage;
 import com.webmini.miniweb.messaging.service.EmailService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
@@ -20,6 +22,8 @@ public class CategoryEventListener {
 
     private final EmailService emailService;
     private final ProductRepository productRepository;
+    private final CacheWriteThrough cacheWriter;
+    private final CategoryDictionary categoryDictionary;
 
     /**
      * Lắng nghe message từ category.queue
@@ -30,6 +34,9 @@ public class CategoryEventListener {
         log.info("📥 Nhận message: {}", message);
 
         try {
+            // Message có thể đến từ node khác: đồng bộ lại từ điển danh mục trước khi xử lý
+            categoryDictionary.refresh(message.getCategoryId());
+
             // Xử lý theo loại event
             if (CategoryEventMessage.EventType.CREATED.name().equals(message.getEventType())) {
                 handleCategoryCreated(message);
@@ -80,26 +87,17 @@ public class CategoryEventListener {
 
     /**
      * Cập nhật status của tất cả product thuộc category sang INACTIVE
-     * và xóa cache
+     * và xóa cache (idempotent: chỉ đụng tới các product còn ACTIVE)
      */
-    @CacheEvict(value = "products", allEntries = true)
     private int updateProductsStatus(Long categoryId) {
-        List<Product> products = productRepository.findAllByCategoryId(categoryId);
-        
-        int count = 0;
-        for (Product product : products) {
-            if (product.getStatus() == Product.ProductStatus.ACTIVE) {
-                product.setStatus(Product.ProductStatus.INACTIVE);
-                product.setUpdatedAt(java.time.LocalDateTime.now());
-                count++;
-            }
-        }
+        List<Long> deactivated = productRepository.deactivateActiveByCategoryId(categoryId, java.time.LocalDateTime.now());
 
-        if (count > 0) {
-            productRepository.saveAll(products);
-            log.info("✅ Đã cập nhật {} sản phẩm sang INACTIVE", count);
+        if (!deactivated.isEmpty()) {
+            cacheWriter.evictAll("products", deactivated);
+            cacheWriter.invalidatePages(TaggedPageCache.PRODUCT_PAGES, ProductPageTags.forWrite(categoryId));
+            log.info("✅ Đã cập nhật {} sản phẩm sang INACTIVE", deactivated.size());
         }
 
-        return count;
+        return deactivated.size();
     }
 }
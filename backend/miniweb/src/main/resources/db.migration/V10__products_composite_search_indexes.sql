@@ -0,0 +1,15 @@
+-- Index ghép cho các tổ hợp lọc/sắp xếp thực tế của ProductRepositoryImpl.search:
+-- cột lọc bằng (=) đứng trước, cột sắp xếp đứng sau, id ở cuối làm khóa phụ cho keyset,
+-- để MySQL vừa lọc vừa đọc đúng thứ tự mà không phải filesort.
+CREATE INDEX idx_products_cat_status_created ON products(category_id, status, created_at, id);
+CREATE INDEX idx_products_cat_status_price   ON products(category_id, status, price, id);
+CREATE INDEX idx_products_cat_status_name    ON products(category_id, status, name, id);
+CREATE INDEX idx_products_status_created     ON products(status, created_at, id);
+-- Báo cáo sắp hết hàng: status = ? AND stock < ?
+CREATE INDEX idx_products_status_stock       ON products(status, stock);
+
+-- status đã là tiền tố của các index ở trên
+DROP INDEX idx_products_status ON products;
+
+-- FK fk_products_category đã có index với tiền tố category_id ở trên, index đơn cột chỉ còn tốn chi phí ghi
+DROP INDEX idx_products_category_id ON products;
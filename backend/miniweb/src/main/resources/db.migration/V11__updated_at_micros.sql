@@ -0,0 +1,5 @@
+-- updated_at là phiên bản của dòng cho cache đánh phiên bản (TableVersions/VersionedCache): cần độ chính xác
+-- micro giây để hai lần ghi trong cùng một giây khác nhau. Không dùng trigger: câu SQL sửa tay phải tự đặt
+-- updated_at = NOW(6) thì cache mới phát hiện được.
+ALTER TABLE products   MODIFY updated_at DATETIME(6) NULL;
+ALTER TABLE categories MODIFY updated_at DATETIME(6) NULL;
@@ -0,0 +1,6 @@
+-- Index cho phân trang keyset: InnoDB tự nối khóa chính (id) vào cuối mỗi secondary index,
+-- nên ORDER BY <cột>, id có thể đọc thẳng theo index thay vì filesort.
+CREATE INDEX idx_products_created_at ON products(created_at);
+CREATE INDEX idx_products_updated_at ON products(updated_at);
+CREATE INDEX idx_products_price      ON products(price);
+CREATE INDEX idx_products_stock      ON products(stock);
@@ -0,0 +1,8 @@
+-- Cột tên không dấu (chữ thường, bỏ dấu tiếng Việt, đ -> d) để tìm kiếm "ao so mi" ra "Áo sơ mi".
+-- Giá trị được tính bằng TextNormalizer.fold ở tầng ứng dụng: repository ghi khi insert/update,
+-- FoldedNameBackfillJob điền dần các dòng cũ (name_folded IS NULL) theo từng chunk.
+ALTER TABLE products   ADD COLUMN name_folded VARCHAR(200) NULL AFTER name;
+ALTER TABLE categories ADD COLUMN name_folded VARCHAR(150) NULL AFTER name;
+
+CREATE INDEX idx_products_name_folded   ON products(name_folded);
+CREATE INDEX idx_categories_name_folded ON categories(name_folded);
@@ -0,0 +1,8 @@
+-- Tìm kiếm theo tên bằng FULLTEXT (parser ngram, ngram_token_size mặc định = 2) trên cột đã fold,
+-- thay cho LIKE '%q%' vốn luôn phải quét toàn bảng.
+-- Danh sách stopword mặc định của InnoDB có "a", "i"...: parser ngram bỏ mọi token chứa stopword,
+-- nên "ao", "mi", "ba" sẽ không bao giờ được index (tên đã fold gần như từ nào cũng chứa "a"/"i").
+-- Stopword được gắn vào index lúc tạo, nên tắt trước.
+SET SESSION innodb_ft_enable_stopword = OFF;
+ALTER TABLE products   ADD FULLTEXT INDEX ftx_products_name_folded   (name_folded) WITH PARSER ngram;
+ALTER TABLE categories ADD FULLTEXT INDEX ftx_categories_name_folded (name_folded) WITH PARSER ngram;
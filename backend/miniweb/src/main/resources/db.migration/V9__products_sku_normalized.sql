@@ -0,0 +1,5 @@
+-- SKU chuẩn hóa (chữ thường) dạng generated column + UNIQUE index, để tra cứu SKU không phân biệt
+-- hoa thường là một lần dò index thay vì WHERE LOWER(sku) = LOWER(?) quét toàn bảng.
+ALTER TABLE products
+    ADD COLUMN sku_normalized VARCHAR(100) GENERATED ALWAYS AS (LOWER(sku)) STORED AFTER sku,
+    ADD UNIQUE INDEX uq_products_sku_normalized (sku_normalized);
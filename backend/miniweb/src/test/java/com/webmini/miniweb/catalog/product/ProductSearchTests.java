@@ -0,0 +1,83 @@
+package com.webmini.miniweb.catalog.product;
+
+import com.webmini.miniweb.catalog.product.dto.ProductDtos;
+import com.webmini.miniweb.catalog.product.repo.ProductRepository;
+import com.webmini.miniweb.common.TextNormalizer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tìm kiếm theo tên trên FULLTEXT ngram thật (cần MySQL như MiniwebApplicationTests).
+ * Dữ liệu được ghi ngoài transaction vì InnoDB chỉ đưa dòng vào index FULLTEXT khi commit.
+ */
+@SpringBootTest
+class ProductSearchTests {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private ProductRepository products;
+
+    private Long categoryId;
+
+    @BeforeEach
+    void setUp() {
+        String categoryName = "test-search-" + UUID.randomUUID();
+        jdbc.update("INSERT INTO categories (name, name_folded, status) VALUES (?, ?, 'ACTIVE')",
+                categoryName, TextNormalizer.fold(categoryName));
+        categoryId = jdbc.queryForObject("SELECT id FROM categories WHERE name = ?", Long.class, categoryName);
+        insertProduct("Áo sơ mi trắng");
+        insertProduct("Bàn phím cơ");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("DELETE FROM products WHERE category_id = ?", categoryId);
+        jdbc.update("DELETE FROM categories WHERE id = ?", categoryId);
+    }
+
+    @Test
+    void findsBigramContainingDefaultStopword() {
+        // "ao", "mi", "ba" đều chứa "a"/"i", là stopword mặc định của InnoDB
+        assertThat(searchNames("ao")).containsExactly("Áo sơ mi trắng");
+        assertThat(searchNames("mi")).containsExactly("Áo sơ mi trắng");
+        assertThat(searchNames("ba")).containsExactly("Bàn phím cơ");
+    }
+
+    @Test
+    void findsFoldedMultiWordQuery() {
+        assertThat(searchNames("Áo Sơ Mi")).containsExactly("Áo sơ mi trắng");
+        assertThat(searchNames("ban phim")).containsExactly("Bàn phím cơ");
+    }
+
+    @Test
+    void oneCharacterWordStillMatchesAnywhereInName() {
+        // Từ 1 ký tự không được biến cả truy vấn thành tìm tiền tố của tên
+        assertThat(searchNames("phim c")).containsExactly("Bàn phím cơ");
+        assertThat(searchNames("mi t")).containsExactly("Áo sơ mi trắng");
+    }
+
+    private List<String> searchNames(String q) {
+        return products.search(q, null, categoryId, null, null, PageRequest.of(0, 10)).getContent().stream()
+                .map(ProductDtos.ProductResponse::name)
+                .toList();
+    }
+
+    private void insertProduct(String name) {
+        jdbc.update("""
+                INSERT INTO products (sku, name, name_folded, category_id, price, stock, status)
+                VALUES (?, ?, ?, ?, 0, 0, 'ACTIVE')
+                """, "T-" + UUID.randomUUID(), name, TextNormalizer.fold(name), categoryId);
+    }
+}
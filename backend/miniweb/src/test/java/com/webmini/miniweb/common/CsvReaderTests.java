@@ -0,0 +1,76 @@
+package com.webmini.miniweb.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvReaderTests {
+
+    @Test
+    void readsPlainRecords() throws IOException {
+        assertThat(readAll("sku,name,price\nA1,Áo,100\n"))
+                .containsExactly(List.of("sku", "name", "price"), List.of("A1", "Áo", "100"));
+    }
+
+    @Test
+    void keepsCommaInsideQuotedField() throws IOException {
+        assertThat(readAll("A1,\"Áo sơ mi, trắng\",100\n"))
+                .containsExactly(List.of("A1", "Áo sơ mi, trắng", "100"));
+    }
+
+    @Test
+    void unescapesDoubledQuotes() throws IOException {
+        assertThat(readAll("A1,\"Màn hình 27\"\" 4K\",\"\"\n"))
+                .containsExactly(List.of("A1", "Màn hình 27\" 4K", ""));
+    }
+
+    @Test
+    void treatsCrLfAsOneLineBreak() throws IOException {
+        assertThat(readAll("a,b\r\nc,d\r\n"))
+                .containsExactly(List.of("a", "b"), List.of("c", "d"));
+    }
+
+    @Test
+    void keepsNewlineInsideQuotedFieldAndCountsLines() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("a,\"dòng 1\r\ndòng 2\"\nb,c\n"));
+
+        assertThat(csv.next()).containsExactly("a", "dòng 1\r\ndòng 2");
+        assertThat(csv.line()).isEqualTo(3);
+        assertThat(csv.next()).containsExactly("b", "c");
+        assertThat(csv.next()).isNull();
+    }
+
+    @Test
+    void skipsLeadingBom() throws IOException {
+        assertThat(readAll("\uFEFF\"sku\",name\nA1,Áo\n"))
+                .containsExactly(List.of("sku", "name"), List.of("A1", "Áo"));
+    }
+
+    @Test
+    void readsLastRecordWithoutTrailingNewline() throws IOException {
+        assertThat(readAll("a,b\nc,")).containsExactly(List.of("a", "b"), List.of("c", ""));
+        assertThat(readAll("a,b\r")).containsExactly(List.of("a", "b"));
+    }
+
+    @Test
+    void rejectsUnterminatedQuote() {
+        assertThatThrownBy(() -> readAll("a,\"chưa đóng\n"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("dòng");
+    }
+
+    private static List<List<String>> readAll(String content) throws IOException {
+        CsvReader csv = new CsvReader(new StringReader(content));
+        List<List<String>> records = new ArrayList<>();
+        for (List<String> record = csv.next(); record != null; record = csv.next()) {
+            records.add(record);
+        }
+        return records;
+    }
+}